@@ -0,0 +1,117 @@
+package edu.gatech.seclass.adjusttxt;
+
+import edu.gatech.seclass.adjusttxt.AdjustTxtInterface.LineToSkip;
+import edu.gatech.seclass.adjusttxt.AdjustTxtInterface.RemoveSpaces;
+import edu.gatech.seclass.adjusttxt.AdjustTxtInterface.ReverseLine;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end throughput of AdjustTxt.adjusttxt() over a generated file, for
+ * every combination of -s, -w, -r and -p. The output goes to a null
+ * OutputStream, but it is still encoded, so the cost of writing it is
+ * included.
+ *
+ * <p>Besides ops/s, the "megabytes" and "lines" counters report MB/s and
+ * lines/s of input. With -prof gc, gc.alloc.rate.norm divided by the number
+ * of lines in the file gives the bytes allocated per line.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AdjustTxtBenchmark {
+    @Param({"1", "64"})
+    public int fileSizeMb;
+
+    @Param({"short", "long", "mixed"})
+    public String lineLength;
+
+    @Param({"sparse", "dense"})
+    public String whitespace;
+
+    @Param({"none", "even", "odd"})
+    public String lineToSkip;
+
+    @Param({"none", "leading", "trailing", "all"})
+    public String removeSpaces;
+
+    @Param({"none", "words", "text"})
+    public String reverseLine;
+
+    @Param({"none", ">> "})
+    public String prefix;
+
+    private Path file;
+    private long fileSize;
+    private long fileLines;
+    private AdjustTxt adjustTxt;
+
+    /**
+     * Input consumed per operation, reported as rates next to ops/s
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Input {
+        public double megabytes;
+        public long lines;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String text = BenchmarkInput.text((long) this.fileSizeMb << 20,
+                this.lineLength, this.whitespace);
+        this.file = Files.createTempFile("adjusttxt-bench", ".txt");
+        Files.writeString(this.file, text);
+        this.fileSize = Files.size(this.file);
+        this.fileLines = text.chars().filter(c -> c == '\n').count();
+
+        this.adjustTxt = new AdjustTxt();
+        this.adjustTxt.setFilepath(this.file.toString());
+        if (!this.lineToSkip.equals("none")) {
+            this.adjustTxt.setLineToSkip(LineToSkip.valueOf(this.lineToSkip));
+        }
+        if (!this.removeSpaces.equals("none")) {
+            this.adjustTxt.setRemoveSpaces(RemoveSpaces.valueOf(this.removeSpaces));
+        }
+        if (!this.reverseLine.equals("none")) {
+            this.adjustTxt.setReverseLine(ReverseLine.valueOf(this.reverseLine));
+        }
+        if (!this.prefix.equals("none")) {
+            this.adjustTxt.setPrefix(this.prefix);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(this.file);
+    }
+
+    @Benchmark
+    public void adjusttxt(Input input) throws AdjustTxtException {
+        this.adjustTxt.adjusttxt(OutputStream.nullOutputStream());
+        input.megabytes += this.fileSize / (1024.0 * 1024.0);
+        input.lines += this.fileLines;
+    }
+}
@@ -0,0 +1,83 @@
+package edu.gatech.seclass.adjusttxt;
+
+import java.util.Random;
+
+/**
+ * Generates deterministic benchmark input from a fixed seed, shaped by the
+ * same parameters the benchmarks are run with: how long the lines are and
+ * how much of them is whitespace.
+ */
+final class BenchmarkInput {
+    private static final long SEED = 42;
+    private static final String LETTERS =
+            "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789.,:=/";
+
+    private BenchmarkInput() {
+    }
+
+    /**
+     * Generates lines until their total size (with "\n") reaches size
+     *
+     * @param size target size in bytes
+     * @param lineLength "short" (~20 chars), "long" (~400 chars) or "mixed"
+     *                   (anything from empty up to ~1000 chars)
+     * @param whitespace "sparse" (~1 in 10 chars) or "dense" (~1 in 3 chars,
+     *                   in runs)
+     * @return generated text, every line ending with "\n"
+     */
+    static String text(long size, String lineLength, String whitespace) {
+        Random random = new Random(SEED);
+        StringBuilder text = new StringBuilder((int) size + 1024);
+        while (text.length() < size) {
+            text.append(line(random, lineLength, whitespace)).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Generates count lines, without their "\n"
+     *
+     * @param count number of lines
+     * @param lineLength see {@link #text}
+     * @param whitespace see {@link #text}
+     * @return generated lines
+     */
+    static String[] lines(int count, String lineLength, String whitespace) {
+        Random random = new Random(SEED);
+        String[] lines = new String[count];
+        for (int i = 0; i < count; i++) {
+            lines[i] = line(random, lineLength, whitespace);
+        }
+        return lines;
+    }
+
+    private static String line(Random random, String lineLength,
+                               String whitespace) {
+        int length;
+        switch (lineLength) {
+            case "short":
+                length = 10 + random.nextInt(20);
+                break;
+            case "long":
+                length = 300 + random.nextInt(200);
+                break;
+            default:
+                length = random.nextInt(1000);
+        }
+
+        boolean dense = whitespace.equals("dense");
+        StringBuilder line = new StringBuilder(length);
+        while (line.length() < length) {
+            if (random.nextInt(dense ? 3 : 10) == 0) {
+                // Case: whitespace run. Dense input has longer runs and tabs
+                int run = dense ? 1 + random.nextInt(4) : 1;
+                for (int i = 0; i < run; i++) {
+                    line.append(dense && random.nextInt(4) == 0 ? '\t' : ' ');
+                }
+            } else {
+                line.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+            }
+        }
+        return line.toString();
+    }
+}
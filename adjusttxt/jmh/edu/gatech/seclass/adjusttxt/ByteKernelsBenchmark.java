@@ -0,0 +1,142 @@
+package edu.gatech.seclass.adjusttxt;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The 8-bytes-at-a-time ByteKernels against the byte-at-a-time loops they
+ * replaced, on the same generated text. One operation per input byte, so
+ * the scores are bytes per second.
+ *
+ * <p>indexOf and count scan a direct buffer, as LineScanner and the -j line
+ * count do on a mapped file. asciiPrefix scans each line of a byte[], as the
+ * UTF-8 fast path of LineDecoder does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ByteKernelsBenchmark {
+    private static final int SIZE = 1 << 20;
+    private static final byte LF = '\n';
+
+    @Param({"short", "long", "mixed"})
+    public String lineLength;
+
+    private ByteBuffer buffer;
+    private byte[] array;
+    private int[] lineEnds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String text = BenchmarkInput.text(SIZE, this.lineLength, "sparse")
+                .substring(0, SIZE);
+        this.array = text.getBytes(StandardCharsets.US_ASCII);
+        this.buffer = ByteBuffer.allocateDirect(SIZE);
+        this.buffer.put(this.array).clear();
+
+        this.lineEnds = new int[(int) text.chars().filter(c -> c == LF).count()];
+        int line = 0;
+        for (int i = 0; i < SIZE; i++) {
+            if (this.array[i] == LF) {
+                this.lineEnds[line++] = i;
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int indexOfSwar() {
+        int start = 0;
+        int i;
+        while ((i = ByteKernels.indexOf(this.buffer, start, SIZE, LF)) >= 0) {
+            start = i + 1;
+        }
+        return start;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int indexOfScalar() {
+        int start = 0;
+        int i;
+        while ((i = scalarIndexOf(this.buffer, start, SIZE, LF)) >= 0) {
+            start = i + 1;
+        }
+        return start;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public long countSwar() {
+        return ByteKernels.count(this.buffer, 0, SIZE, LF);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public long countScalar() {
+        long count = 0;
+        for (int i = 0; i < SIZE; i++) {
+            if (this.buffer.get(i) == LF) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int asciiPrefixSwar() {
+        int sum = 0;
+        int start = 0;
+        for (int end : this.lineEnds) {
+            sum += ByteKernels.asciiPrefix(this.array, start, end);
+            start = end + 1;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int asciiPrefixScalar() {
+        int sum = 0;
+        int start = 0;
+        for (int end : this.lineEnds) {
+            int i = start;
+            while (i < end && this.array[i] >= 0) {
+                i++;
+            }
+            sum += i;
+            start = end + 1;
+        }
+        return sum;
+    }
+
+    // The loop LineScanner used before ByteKernels
+    private static int scalarIndexOf(ByteBuffer bytes, int from, int to,
+                                     byte b) {
+        for (int i = from; i < to; i++) {
+            if (bytes.get(i) == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
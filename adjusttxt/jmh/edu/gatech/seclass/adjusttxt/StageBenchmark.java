@@ -0,0 +1,159 @@
+package edu.gatech.seclass.adjusttxt;
+
+import edu.gatech.seclass.adjusttxt.AdjustTxtInterface.LineToSkip;
+import edu.gatech.seclass.adjusttxt.AdjustTxtInterface.RemoveSpaces;
+import edu.gatech.seclass.adjusttxt.AdjustTxtInterface.ReverseLine;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Throughput of each compiled stage on its own, one operation per line. With
+ * -prof gc, gc.alloc.rate.norm is the number of bytes allocated per line.
+ *
+ * <p>Every operation first copies a generated line into the reused
+ * LineBuffer, as decoding does in a real run, and then runs one stage.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StageBenchmark {
+    private static final int LINES = 4096;
+
+    @Param({"short", "long", "mixed"})
+    public String lineLength;
+
+    @Param({"sparse", "dense"})
+    public String whitespace;
+
+    private String[] lines;
+    private final LineBuffer line = new LineBuffer(256);
+    private final Writer out = Writer.nullWriter();
+    private final LinePipeline prefix = LinePipeline.compile(null, null,
+            false, null, ">> ", null);
+
+    /**
+     * -s stage
+     */
+    @State(Scope.Thread)
+    public static class SkipLine {
+        @Param({"even", "odd"})
+        public String lineToSkip;
+
+        LinePipeline pipeline;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            this.pipeline = LinePipeline.compile(
+                    LineToSkip.valueOf(this.lineToSkip), null, false, null,
+                    null, null);
+        }
+    }
+
+    /**
+     * -w stage
+     */
+    @State(Scope.Thread)
+    public static class ProcessSpacing {
+        @Param({"leading", "trailing", "all"})
+        public String removeSpaces;
+
+        LinePipeline pipeline;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            this.pipeline = LinePipeline.compile(null,
+                    RemoveSpaces.valueOf(this.removeSpaces), false, null, null,
+                    null);
+        }
+    }
+
+    /**
+     * -r stage
+     */
+    @State(Scope.Thread)
+    public static class ProcessReversal {
+        @Param({"words", "text"})
+        public String reverseLine;
+
+        LinePipeline pipeline;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            this.pipeline = LinePipeline.compile(null, null, false,
+                    ReverseLine.valueOf(this.reverseLine), null, null);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.lines = BenchmarkInput.lines(LINES, this.lineLength,
+                this.whitespace);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void skipLine(SkipLine stage, Blackhole blackhole) {
+        run(stage.pipeline, blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void processSpacing(ProcessSpacing stage, Blackhole blackhole) {
+        run(stage.pipeline, blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void processReversal(ProcessReversal stage, Blackhole blackhole) {
+        run(stage.pipeline, blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void removeEmptyLines(Blackhole blackhole) {
+        for (String text : this.lines) {
+            this.line.set(text);
+            blackhole.consume(LineKernels.isBlank(this.line));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void prefix() throws IOException {
+        long lineNumber = 1;
+        for (String text : this.lines) {
+            this.line.set(text);
+            this.prefix.emit(lineNumber++, this.line, "\n", this.out);
+        }
+    }
+
+    // Runs every line through the pipeline's stages
+    private void run(LinePipeline pipeline, Blackhole blackhole) {
+        long lineNumber = 1;
+        for (String text : this.lines) {
+            this.line.set(text);
+            blackhole.consume(pipeline.apply(lineNumber++, this.line));
+            blackhole.consume(this.line.end);
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package edu.gatech.seclass.adjusttxt;
 
 import java.io.*;
-import java.util.Arrays;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
 
 public class AdjustTxt implements AdjustTxtInterface{
 
@@ -11,6 +13,11 @@ public class AdjustTxt implements AdjustTxtInterface{
     private boolean removeEmptyLines = false;
     private ReverseLine reverseLine = null;
     private String prefix = null;
+    private int parallelism = 1;
+    private String outputPath = null;
+    private Charset charset = null;
+    private boolean stats = false;
+    private AdjustTxtListener listener = null;
     private File file = null;
 
     /**
@@ -24,12 +31,18 @@ public class AdjustTxt implements AdjustTxtInterface{
         this.removeEmptyLines = false;
         this.reverseLine = null;
         this.prefix = null;
+        this.parallelism = 1;
+        this.outputPath = null;
+        this.charset = null;
+        this.stats = false;
+        this.listener = null;
         this.file = null;
     }
 
     /**
      * Sets the path of the input file. This method has to be called before invoking the {@link
-     * #adjusttxt()} methods.
+     * #adjusttxt()} methods. "-" reads stdin, and named pipes are accepted as well as regular
+     * files.
      *
      * @param filepath The file path to be set.
      */
@@ -95,9 +108,72 @@ public class AdjustTxt implements AdjustTxtInterface{
     }
 
     /**
-     * Outputs a System.lineSeparator() delimited string that contains selected parts of the lines
-     * in the file specified using {@link #setFilepath} and according to the current configuration,
-     * which is set through calls to the other methods in the interface.
+     * Sets the number of worker threads used to process the input file. The
+     * file is split into newline-aligned chunks that are processed in
+     * parallel, and the output is identical to processing it sequentially.
+     * Defaults to 1 (sequential).
+     *
+     * @param parallelism number of worker threads
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Writes the output to a file instead of stdout. The output is written
+     * in full to a temp file next to it, synced, and then atomically renamed
+     * into place, so the file is never left half-written. The output path
+     * may be the input file itself, which adjusts it in place. Defaults to
+     * null (stdout).
+     *
+     * @param outputPath The output file path to be set
+     */
+    public void setOutputPath(String outputPath) {
+        this.outputPath = outputPath;
+    }
+
+    /**
+     * Sets the charset the input file is decoded with. ISO-8859-1, US-ASCII
+     * and UTF-8 input is decoded without going through the general decoder
+     * for ASCII text. Defaults to null (the platform default charset).
+     *
+     * @param charset The charset to be set
+     */
+    public void setCharset(Charset charset) {
+        this.charset = charset;
+    }
+
+    /**
+     * Prints a summary of each run to stderr once it is done: lines read,
+     * skipped and written, bytes in and out, wall and CPU time, allocated
+     * bytes, MB/s and the time spent in each stage. Defaults to false.
+     *
+     * @param stats Flag to toggle functionality
+     */
+    public void setStats(boolean stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Registers a listener that receives the metrics of every {@link
+     * #adjusttxt()} call: progress while the input is consumed, then the
+     * final counts or the error. Lines are only counted while a listener or
+     * {@link #setStats} is set. Defaults to null (no listener).
+     *
+     * @param listener The listener to be set. Null removes it
+     */
+    public void setListener(AdjustTxtListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Outputs the selected parts of the lines in the file specified using {@link #setFilepath},
+     * according to the current configuration, which is set through calls to the other methods in
+     * the interface. The output goes to stdout, or to the output path if one is set.
+     *
+     * <p>Lines end at "\n" or "\r\n", and each output line keeps the terminator it had in the
+     * file, not System.lineSeparator(). LF, CRLF and mixed files therefore keep their line
+     * endings on every platform. A lone "\r" is not a terminator and stays part of its line.
      *
      * <p>It throws a {@link AdjustTxtException} if an error condition occurs (e.g., when the
      * specified file does not exist).
@@ -106,219 +182,168 @@ public class AdjustTxt implements AdjustTxtInterface{
      */
     @Override
     public void adjusttxt() throws AdjustTxtException {
-        // Set up file
-        try {
-            setUpFile();
-        } catch (Exception e) {
-            throw new AdjustTxtException(e.toString());
-        }
-
-        // Make sure that both -x and -w options are not toggled
-        if (this.removeEmptyLines && this.removeSpaces != null) {
-            throw new AdjustTxtException(
-                    "Cannot toggle both -x and -w options");
-        }
-
-        // -p cannot be an empty string if toggled
-        if (this.prefix != null && this.prefix.isEmpty()) {
-            throw new AdjustTxtException("Prefix cannot be empty");
-        }
-
-        // Output adjusted text or throw error
-        try {
-            String output = generateOutput();
-            System.out.print(output);
-        } catch (Exception e) {
-            throw new AdjustTxtException(e.toString());
-        }
+        adjusttxt(null, this.outputPath == null ? System.out : null);
     }
 
     /**
-     * Validates the stored file path and stores File type as this.file
+     * Same as {@link #adjusttxt()}, but streams the output into out instead
+     * of stdout or the output path. Nothing global is touched, so calls on
+     * different AdjustTxt objects can write to their own sinks concurrently.
+     * out is flushed, but not closed. Bytes out are not counted, as out
+     * takes chars.
      *
-     * @throws IllegalArgumentException if file invalid
-     * @throws RuntimeException if RandomAccessFile fails
+     * @param out sink for the adjusted lines
+     * @throws AdjustTxtException thrown if an error condition occurs
      */
-    private void setUpFile() {
-        // Case: no file path provided
-        if (this.filePath == null) {
-            throw new IllegalArgumentException("filepath is null");
-        }
-
-        // Create new file. Validate it
-        File newFile = new File(this.filePath);
-
-        if (!newFile.exists() || !newFile.isFile()) {
-            throw new IllegalArgumentException("Invalid file: " + newFile);
+    public void adjusttxt(Writer out) throws AdjustTxtException {
+        if (out == null) {
+            throw new AdjustTxtException("out is null");
         }
-
-        // Check that the file ends in a new line
-        try (RandomAccessFile checkFile = new RandomAccessFile(newFile, "r")) {
-            // Get file size. If empty, can move on
-            long numLines = checkFile.length();
-
-            if (numLines > 0) {
-                // Compare to system's lineSeparator by checking last
-                // length(lineSeparator) bytes and comparing to those in file
-                byte[] lineSeparator = System.lineSeparator().getBytes();
-                int lineSeparatorLength = lineSeparator.length;
-                checkFile.seek(numLines - lineSeparatorLength);
-
-                byte[] endingBytes = new byte[lineSeparatorLength];
-                checkFile.readFully(endingBytes);
-
-                // Throw error if last length(lineSeparator) bytes do not match
-                // lineSeparator
-                if (!Arrays.equals(lineSeparator, endingBytes)) {
-                    throw new IllegalArgumentException("File does not end with newline");
-                }
-            }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-
-        // Store new file
-        this.file = newFile;
+        adjusttxt(out, null);
     }
 
     /**
-     * Processes input file to generate output String
+     * Same as {@link #adjusttxt()}, but streams the output into out instead
+     * of stdout or the output path, encoded like stdout with the platform
+     * default charset. out is flushed, but not closed.
      *
-     * @return String to be outputted to console
-     * @throws IllegalArgumentException when file doesn't end in newline
+     * @param out sink for the adjusted text
+     * @throws AdjustTxtException thrown if an error condition occurs
      */
-    private String generateOutput() {
-        StringBuilder out = new StringBuilder();
-        File file = this.file;
-        String prefix = (this.prefix == null) ? "" : this.prefix;
-
-        // Parse through all lines. Update in order -s -> -w / -x -> -r -> -p
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            int lineNum = 1;
-            while ((line = reader.readLine()) != null) {
-                // Handle -s and -x options
-                if (skipLine(lineNum, line)) {
-                    lineNum++;
-                    continue;
-                }
-
-                // Handle -w option
-                String processedLine = processSpacing(line);
-
-                // Handle -r option
-                processedLine = processReversal(processedLine);
-
-                // Handle -p option (add prefix)
-                processedLine = prefix + processedLine;
-
-                // Add line to output
-                out.append(processedLine).append(System.lineSeparator());
-                lineNum++;
-            }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+    public void adjusttxt(OutputStream out) throws AdjustTxtException {
+        if (out == null) {
+            throw new AdjustTxtException("out is null");
         }
-
-        return out.toString();
+        adjusttxt(null, out);
     }
 
     /**
-     * Choose whether to skip a line based on this.lineToSkip and
-     * this.removeEmptyLines values
+     * Same as {@link #adjusttxt()}, but streams the output into out instead
+     * of stdout or the output path, encoded like stdout with the platform
+     * default charset. out is not closed, and must be in blocking mode.
      *
-     * @param lineNumber current line number in file
-     * @param line current line
-     * @return True to skip line, False to process it
+     * @param out sink for the adjusted text
+     * @throws AdjustTxtException thrown if an error condition occurs
      */
-    private Boolean skipLine(int lineNumber, String line) {
-        boolean skipLine = false;
-
-        // Case: lineToSkip = 0 (even) or 1 (odd). Skip even / odd line
-        if (this.lineToSkip != null) {
-            int skip = lineToSkip == LineToSkip.odd ? 1 : 0;
-            skipLine = (lineNumber % 2) == skip;
-        }
-
-        // Case: -x toggled. Skip empty lines
-        if (this.removeEmptyLines && isEmptyLine(line)) {
-            skipLine = true;
+    public void adjusttxt(WritableByteChannel out) throws AdjustTxtException {
+        if (out == null) {
+            throw new AdjustTxtException("out is null");
         }
-
-        return skipLine;
-    }
-
-    // Checks if current line is empty
-    private static Boolean isEmptyLine(String line) {
-        return line.trim().isEmpty();
+        adjusttxt(null, Channels.newOutputStream(out));
     }
 
     /**
-     * Removes leading, trailing, or all white spaces depending on
-     * this.removeSpaces value.
+     * Runs one call, reporting to the listener. The output goes to writer,
+     * or else to stream, or else to the output path.
      *
-     * @param line line in the file being processed
-     * @return processed line
+     * @param writer sink for the adjusted lines. Null if not given
+     * @param stream sink for the adjusted text. Null if not given
+     * @throws AdjustTxtException thrown if an error condition occurs
      */
-    private String processSpacing(String line) {
-        String processedLine = line;
-
-        // Case: -w option not toggled
-        if (this.removeSpaces == null) {
-            return processedLine;
+    private void adjusttxt(Writer writer, OutputStream stream)
+            throws AdjustTxtException {
+        AdjustTxtListener listener = this.listener;
+        String filepath = this.filePath;
+
+        // Case: no listener and no stats. Nothing is counted
+        if (listener == null && !this.stats) {
+            run(writer, stream, null);
+            return;
         }
 
-        // Remove whitespaces based on spacing argument and return updated line
-        if (this.removeSpaces == RemoveSpaces.leading) {
-            processedLine = line.replaceAll("^\\s+", "");
-        }
-        if (this.removeSpaces == RemoveSpaces.trailing) {
-            processedLine = line.replaceAll("\\s+$", "");
-        }
-        if (this.removeSpaces == RemoveSpaces.all) {
-            processedLine = line.replaceAll("\\s+", "");
+        RunStats runStats = new RunStats(listener == null ? null
+                : (run, job) -> listener.onProgress(
+                        new AdjustTxtMetrics(filepath, run, job)));
+        try {
+            run(writer, stream, runStats);
+        } catch (AdjustTxtException e) {
+            if (listener != null) {
+                listener.onError(
+                        new AdjustTxtMetrics(filepath, runStats, null), e);
+            }
+            throw e;
         }
 
-        return processedLine;
+        if (listener != null) {
+            listener.onComplete(new AdjustTxtMetrics(filepath, runStats, null));
+        }
     }
 
     /**
-     * Reverses line based on "text" and "words" options stored in
-     * this.reverseLine
+     * Validates the configuration and writes the output
      *
-     * @param line line in the file being processed
-     * @return processed line
+     * @param writer sink for the adjusted lines. Null if not given
+     * @param stream sink for the adjusted text. Null if not given
+     * @param runStats counters to record the call into. Null if nothing
+     *                 needs them
+     * @throws AdjustTxtException thrown if an error condition occurs
      */
-    private String processReversal(String line) {
-        String processedLine = line;
-        StringBuilder reversedLine;
-
-        // Case: -r option not toggled
-        if (this.reverseLine == null) {
-            return processedLine;
-        }
-
-        // Handle reversing text
-        if (this.reverseLine == ReverseLine.text){
-            reversedLine = new StringBuilder(line);
-            processedLine = reversedLine.reverse().toString();
+    private void run(Writer writer, OutputStream stream, RunStats runStats)
+            throws AdjustTxtException {
+        // Set up file
+        try {
+            setUpFile();
+        } catch (Exception e) {
+            throw new AdjustTxtException(e.toString());
         }
 
-        // Handle reversing word order. Preserve original whitespaces.
-        if (this.reverseLine == ReverseLine.words) {
-            // Get all words in String array. Reverse them and store as String
-            reversedLine = new StringBuilder();
-
-            // (?<=\\s)|(?=\\s) is a regex string that allows for inclusion of
-            // all whitespaces in the String array
-            String[] words = line.split("(?<=\\s)|(?=\\s)");
+        // Validate and compile the options once for this call
+        AdjustTxtProgram program = AdjustTxtConfig.builder()
+                .lineToSkip(this.lineToSkip)
+                .removeSpaces(this.removeSpaces)
+                .removeEmptyLines(this.removeEmptyLines)
+                .reverseLine(this.reverseLine)
+                .prefix(this.prefix)
+                .charset(this.charset)
+                .parallelism(this.parallelism)
+                .build()
+                .compile();
+
+        // Stream adjusted text to the sink or the output file, or throw error
+        try {
+            // Lines before an error (e.g. stdin without a trailing newline)
+            // are flushed, so the output stops on a line boundary
+            if (writer != null) {
+                try {
+                    program.run(this.file, writer, runStats);
+                } finally {
+                    writer.flush();
+                }
+            } else if (stream != null) {
+                Writer out = new BufferedWriter(new OutputStreamWriter(
+                        runStats == null
+                                ? stream
+                                : runStats.countOutput(stream)));
+                try {
+                    program.run(this.file, out, runStats);
+                } finally {
+                    out.flush();
+                }
+            } else {
+                long written = AtomicOutput.write(
+                        new File(this.outputPath).toPath(),
+                        out -> program.run(this.file, out, runStats));
+                if (runStats != null) {
+                    runStats.bytesOut.add(written);
+                }
+            }
 
-            for (int i = words.length - 1; i >= 0; i--) {
-                reversedLine.append(words[i]);
+            if (this.stats) {
+                runStats.print(System.err);
             }
-            processedLine = reversedLine.toString();
+        } catch (Exception e) {
+            throw new AdjustTxtException(e.toString());
         }
+    }
 
-        return processedLine;
+    /**
+     * Validates the stored file path and stores File type as this.file. The
+     * file is not opened here: the trailing newline is checked while it is
+     * read, so it is only opened once.
+     *
+     * @throws IllegalArgumentException if file invalid
+     */
+    private void setUpFile() {
+        this.file = AdjustTxtProgram.inputFile(this.filePath);
     }
 }
@@ -0,0 +1,223 @@
+package edu.gatech.seclass.adjusttxt;
+
+import edu.gatech.seclass.adjusttxt.AdjustTxtInterface.LineToSkip;
+import edu.gatech.seclass.adjusttxt.AdjustTxtInterface.RemoveSpaces;
+import edu.gatech.seclass.adjusttxt.AdjustTxtInterface.ReverseLine;
+
+import java.nio.charset.Charset;
+
+/**
+ * Immutable set of adjusttxt options, validated once when it is built. Unlike
+ * AdjustTxt, which is configured through setters and reset() between uses, a
+ * config can be shared freely between threads. {@link #compile()} turns it
+ * into an {@link AdjustTxtProgram} that many threads can run at the same
+ * time.
+ *
+ * <p>Example:
+ * <pre>
+ * AdjustTxtProgram program = AdjustTxtConfig.builder()
+ *         .lineToSkip(LineToSkip.even)
+ *         .removeSpaces(RemoveSpaces.trailing)
+ *         .prefix("&gt; ")
+ *         .build()
+ *         .compile();
+ * </pre>
+ */
+public final class AdjustTxtConfig {
+    private final LineToSkip lineToSkip;
+    private final RemoveSpaces removeSpaces;
+    private final boolean removeEmptyLines;
+    private final ReverseLine reverseLine;
+    private final String prefix;
+    private final Charset charset;
+    private final int parallelism;
+
+    private AdjustTxtConfig(Builder builder) {
+        this.lineToSkip = builder.lineToSkip;
+        this.removeSpaces = builder.removeSpaces;
+        this.removeEmptyLines = builder.removeEmptyLines;
+        this.reverseLine = builder.reverseLine;
+        this.prefix = builder.prefix;
+        this.charset = builder.charset;
+        this.parallelism = builder.parallelism;
+    }
+
+    /**
+     * @return builder with no option toggled
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Compiles the options into a program. Only the toggled options become
+     * stages, as for AdjustTxt.
+     *
+     * @return thread-safe program running these options
+     */
+    public AdjustTxtProgram compile() {
+        // Update in order -s -> -w / -x -> -r -> -p
+        return new AdjustTxtProgram(this, LinePipeline.compile(this.lineToSkip,
+                this.removeSpaces, this.removeEmptyLines, this.reverseLine,
+                this.prefix, this.charset));
+    }
+
+    /**
+     * @return -s option. Null if not toggled
+     */
+    public LineToSkip getLineToSkip() {
+        return this.lineToSkip;
+    }
+
+    /**
+     * @return -w option. Null if not toggled
+     */
+    public RemoveSpaces getRemoveSpaces() {
+        return this.removeSpaces;
+    }
+
+    /**
+     * @return -x option
+     */
+    public boolean getRemoveEmptyLines() {
+        return this.removeEmptyLines;
+    }
+
+    /**
+     * @return -r option. Null if not toggled
+     */
+    public ReverseLine getReverseLine() {
+        return this.reverseLine;
+    }
+
+    /**
+     * @return -p option. Null if not toggled
+     */
+    public String getPrefix() {
+        return this.prefix;
+    }
+
+    /**
+     * @return --charset option. Null for the platform default charset
+     */
+    public Charset getCharset() {
+        return this.charset;
+    }
+
+    /**
+     * @return number of worker threads per input file
+     */
+    public int getParallelism() {
+        return this.parallelism;
+    }
+
+    /**
+     * Collects the options of an AdjustTxtConfig. Not thread-safe, and only
+     * validated by {@link #build()}.
+     */
+    public static final class Builder {
+        private LineToSkip lineToSkip = null;
+        private RemoveSpaces removeSpaces = null;
+        private boolean removeEmptyLines = false;
+        private ReverseLine reverseLine = null;
+        private String prefix = null;
+        private Charset charset = null;
+        private int parallelism = 1;
+
+        private Builder() {
+        }
+
+        /**
+         * @param lineToSkip skip even or odd lines. Null for neither
+         * @return this builder
+         */
+        public Builder lineToSkip(LineToSkip lineToSkip) {
+            this.lineToSkip = lineToSkip;
+            return this;
+        }
+
+        /**
+         * @param removeSpaces which whitespace to remove. Null for none
+         * @return this builder
+         */
+        public Builder removeSpaces(RemoveSpaces removeSpaces) {
+            this.removeSpaces = removeSpaces;
+            return this;
+        }
+
+        /**
+         * @param removeEmptyLines whether to remove empty lines
+         * @return this builder
+         */
+        public Builder removeEmptyLines(boolean removeEmptyLines) {
+            this.removeEmptyLines = removeEmptyLines;
+            return this;
+        }
+
+        /**
+         * @param reverseLine how to reverse each line. Null for no reversal
+         * @return this builder
+         */
+        public Builder reverseLine(ReverseLine reverseLine) {
+            this.reverseLine = reverseLine;
+            return this;
+        }
+
+        /**
+         * @param prefix prefix added at the start of each line. Null for no
+         *               prefix
+         * @return this builder
+         */
+        public Builder prefix(String prefix) {
+            this.prefix = prefix;
+            return this;
+        }
+
+        /**
+         * @param charset charset the input is decoded with. Null for the
+         *                platform default
+         * @return this builder
+         */
+        public Builder charset(Charset charset) {
+            this.charset = charset;
+            return this;
+        }
+
+        /**
+         * @param parallelism number of worker threads per input file.
+         *                    Defaults to 1 (sequential)
+         * @return this builder
+         */
+        public Builder parallelism(int parallelism) {
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Validates the options and builds the config
+         *
+         * @return immutable config
+         * @throws AdjustTxtException if -x and -w are both toggled, the
+         *                            prefix is empty, or parallelism is
+         *                            below 1
+         */
+        public AdjustTxtConfig build() throws AdjustTxtException {
+            // Make sure that both -x and -w options are not toggled
+            if (this.removeEmptyLines && this.removeSpaces != null) {
+                throw new AdjustTxtException(
+                        "Cannot toggle both -x and -w options");
+            }
+
+            // -p cannot be an empty string if toggled
+            if (this.prefix != null && this.prefix.isEmpty()) {
+                throw new AdjustTxtException("Prefix cannot be empty");
+            }
+
+            if (this.parallelism < 1) {
+                throw new AdjustTxtException("Parallelism must be at least 1");
+            }
+
+            return new AdjustTxtConfig(this);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package edu.gatech.seclass.adjusttxt;
+
+/**
+ * Receives the metrics of each {@link AdjustTxt#adjusttxt()} call, so that an
+ * application embedding AdjustTxt can export them to its own metrics system.
+ * Register it with {@link AdjustTxt#setListener}. Every method has an empty
+ * default, so only the callbacks of interest need to be implemented.
+ *
+ * <p>Callbacks run on the threads doing the work and should return quickly.
+ * They are never called concurrently for the same AdjustTxt call.
+ */
+public interface AdjustTxtListener {
+    /**
+     * Called as the input is consumed: once per scanned block of input
+     * (up to 64 KB for streams, a mapped window or chunk for files). With
+     * parallelism above 1, it may be called from a worker thread.
+     *
+     * @param metrics counts so far
+     */
+    default void onProgress(AdjustTxtMetrics metrics) {
+    }
+
+    /**
+     * Called once the output has been written in full
+     *
+     * @param metrics final counts
+     */
+    default void onComplete(AdjustTxtMetrics metrics) {
+    }
+
+    /**
+     * Called instead of {@link #onComplete} when the call fails, right
+     * before the error is thrown to the caller
+     *
+     * @param metrics counts up to the error
+     * @param error error thrown by {@link AdjustTxt#adjusttxt()}
+     */
+    default void onError(AdjustTxtMetrics metrics, AdjustTxtException error) {
+    }
+}
@@ -0,0 +1,152 @@
+package edu.gatech.seclass.adjusttxt;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Snapshot of the counters of one {@link AdjustTxt#adjusttxt()} call, passed
+ * to an {@link AdjustTxtListener}. Immutable, so it can be kept or handed to
+ * another thread.
+ */
+public final class AdjustTxtMetrics {
+    private final String filepath;
+    private final long linesRead;
+    private final long linesSkipped;
+    private final long linesWritten;
+    private final long bytesIn;
+    private final long bytesOut;
+    private final long elapsedNanos;
+    private final long cpuNanos;
+    private final long allocatedBytes;
+    private final Map<String, Long> stageNanos;
+
+    /**
+     * Sums the counters of the run and of the job still in progress
+     *
+     * @param filepath input file of the call
+     * @param run counters of the call
+     * @param job counters of the current file, not yet added to run. Null
+     *            if there is none
+     */
+    AdjustTxtMetrics(String filepath, RunStats run, RunStats job) {
+        this.filepath = filepath;
+        this.linesRead = sum(run, job, s -> s.linesRead.sum());
+        this.linesSkipped = sum(run, job, s -> s.linesSkipped.sum());
+        this.linesWritten = sum(run, job, s -> s.linesWritten.sum());
+        this.bytesIn = sum(run, job, s -> s.bytesIn.sum());
+        this.bytesOut = sum(run, job, s -> s.bytesOut.sum());
+        this.elapsedNanos = run.elapsedNanos();
+        this.cpuNanos = sum(run, job, s -> s.cpuNanos.sum());
+        this.allocatedBytes = sum(run, job, s -> s.allocatedBytes.sum());
+
+        Map<String, Long> stages = new LinkedHashMap<>();
+        for (int i = 0; i < RunStats.STAGES.length; i++) {
+            int stage = i;
+            long nanos = sum(run, job, s -> s.stageNanos[stage].sum());
+            if (nanos > 0) {
+                stages.put(RunStats.STAGES[i], nanos);
+            }
+        }
+        this.stageNanos = Collections.unmodifiableMap(stages);
+    }
+
+    // Reads one counter of run and job
+    private static long sum(RunStats run, RunStats job,
+                            ToLongFunction<RunStats> counter) {
+        return counter.applyAsLong(run)
+                + (job == null ? 0 : counter.applyAsLong(job));
+    }
+
+    /**
+     * @return file path the call reads, as set with {@link AdjustTxt#setFilepath}
+     */
+    public String getFilepath() {
+        return this.filepath;
+    }
+
+    /**
+     * @return number of lines read from the input
+     */
+    public long getLinesRead() {
+        return this.linesRead;
+    }
+
+    /**
+     * @return number of lines dropped by -s or -x
+     */
+    public long getLinesSkipped() {
+        return this.linesSkipped;
+    }
+
+    /**
+     * @return number of lines written to the output
+     */
+    public long getLinesWritten() {
+        return this.linesWritten;
+    }
+
+    /**
+     * @return number of bytes read. A regular file counts in full as soon
+     *         as it is opened
+     */
+    public long getBytesIn() {
+        return this.bytesIn;
+    }
+
+    /**
+     * @return number of bytes written. Only known once the output has been
+     *         written in full if it goes to a file
+     */
+    public long getBytesOut() {
+        return this.bytesOut;
+    }
+
+    /**
+     * @return wall time since the call started, in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return this.elapsedNanos;
+    }
+
+    /**
+     * @return CPU time of the threads that processed the input, in
+     *         nanoseconds
+     */
+    public long getCpuNanos() {
+        return this.cpuNanos;
+    }
+
+    /**
+     * @return bytes allocated by the threads that processed the input
+     */
+    public long getAllocatedBytes() {
+        return this.allocatedBytes;
+    }
+
+    /**
+     * Time spent in each stage, summed over all lines: "skipLine",
+     * "removeEmptyLines", "processSpacing", "processReversal", "prefix" and
+     * "write". Stages that took no time are left out.
+     *
+     * @return nanoseconds per stage, in pipeline order
+     */
+    public Map<String, Long> getStageNanos() {
+        return this.stageNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "AdjustTxtMetrics{filepath=" + this.filepath
+                + ", linesRead=" + this.linesRead
+                + ", linesSkipped=" + this.linesSkipped
+                + ", linesWritten=" + this.linesWritten
+                + ", bytesIn=" + this.bytesIn
+                + ", bytesOut=" + this.bytesOut
+                + ", elapsedNanos=" + this.elapsedNanos
+                + ", cpuNanos=" + this.cpuNanos
+                + ", allocatedBytes=" + this.allocatedBytes
+                + ", stageNanos=" + this.stageNanos + "}";
+    }
+}
@@ -0,0 +1,132 @@
+package edu.gatech.seclass.adjusttxt;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Compiled form of an {@link AdjustTxtConfig}. A program holds no state
+ * besides its compiled options, so one instance can be run by any number of
+ * threads at the same time, each on its own input and sink, without
+ * synchronization.
+ */
+public final class AdjustTxtProgram {
+    private final AdjustTxtConfig config;
+    private final LinePipeline pipeline;
+
+    AdjustTxtProgram(AdjustTxtConfig config, LinePipeline pipeline) {
+        this.config = config;
+        this.pipeline = pipeline;
+    }
+
+    /**
+     * @return options this program was compiled from
+     */
+    public AdjustTxtConfig getConfig() {
+        return this.config;
+    }
+
+    /**
+     * Adjusts the file at filepath, streaming each line into out as soon as
+     * it is produced. out is flushed, but not closed.
+     *
+     * @param filepath input file. "-" reads stdin
+     * @param out sink for the adjusted lines
+     * @throws AdjustTxtException if the file is invalid, or reading it or
+     *                            writing to out fails
+     */
+    public void run(String filepath, Writer out) throws AdjustTxtException {
+        if (out == null) {
+            throw new AdjustTxtException("out is null");
+        }
+
+        try {
+            try {
+                run(inputFile(filepath), out, null);
+            } finally {
+                out.flush();
+            }
+        } catch (Exception e) {
+            throw new AdjustTxtException(e.toString());
+        }
+    }
+
+    /**
+     * Adjusts the file at filepath into out, encoded with the platform
+     * default charset like stdout. out is flushed, but not closed.
+     *
+     * @param filepath input file. "-" reads stdin
+     * @param out sink for the adjusted text
+     * @throws AdjustTxtException if the file is invalid, or reading it or
+     *                            writing to out fails
+     */
+    public void run(String filepath, OutputStream out)
+            throws AdjustTxtException {
+        if (out == null) {
+            throw new AdjustTxtException("out is null");
+        }
+        run(filepath, new BufferedWriter(new OutputStreamWriter(out)));
+    }
+
+    /**
+     * Adjusts the file at filepath into out, encoded with the platform
+     * default charset like stdout. out is not closed, and must be in
+     * blocking mode.
+     *
+     * @param filepath input file. "-" reads stdin
+     * @param out sink for the adjusted text
+     * @throws AdjustTxtException if the file is invalid, or reading it or
+     *                            writing to out fails
+     */
+    public void run(String filepath, WritableByteChannel out)
+            throws AdjustTxtException {
+        if (out == null) {
+            throw new AdjustTxtException("out is null");
+        }
+        run(filepath, Channels.newOutputStream(out));
+    }
+
+    /**
+     * Adjusts file into out, counting into runStats
+     *
+     * @param file validated input file
+     * @param out sink for the adjusted lines. Flushing is left to the caller
+     * @param runStats counters to record the run into. Null if not needed
+     * @throws IOException if reading the file or writing to out fails
+     */
+    void run(File file, Writer out, RunStats runStats) throws IOException {
+        LinePipeline pipeline = runStats == null
+                ? this.pipeline
+                : this.pipeline.withStats(runStats);
+        pipeline.run(file, this.config.getParallelism(), out);
+    }
+
+    /**
+     * Validates an input file path. The file is not opened here: the
+     * trailing newline is checked while it is read, so it is only opened
+     * once. "-" reads stdin, and named pipes are accepted as well as
+     * regular files.
+     *
+     * @param filepath input file path
+     * @return input file
+     * @throws IllegalArgumentException if file invalid
+     */
+    static File inputFile(String filepath) {
+        // Case: no file path provided
+        if (filepath == null) {
+            throw new IllegalArgumentException("filepath is null");
+        }
+
+        File file = new File(filepath);
+        if (!filepath.equals(LinePipeline.STDIN)
+                && (!file.exists() || file.isDirectory())) {
+            throw new IllegalArgumentException("Invalid file: " + file);
+        }
+        return file;
+    }
+}
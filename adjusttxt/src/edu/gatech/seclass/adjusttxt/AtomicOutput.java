@@ -0,0 +1,137 @@
+package edu.gatech.seclass.adjusttxt;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Writes output to a file without ever leaving it half-written. The output
+ * goes through a FileChannel into a temp file next to the target, which is
+ * forced to disk and then atomically renamed over the target. If anything
+ * fails on the way, the temp file is removed and the target is untouched.
+ *
+ * <p>Because the input is read before the rename, the target can be the
+ * input file itself, which rewrites it in place. A target that is a symlink
+ * is resolved first, so the file it points to is replaced and the link is
+ * kept, as with a shell redirection.
+ *
+ * <p>A new target gets the default mode for new files (0666 minus the
+ * umask), and a replaced target keeps its mode.
+ */
+final class AtomicOutput {
+    // Size of the encoder buffer in front of the channel
+    static final int BUFFER_SIZE = 64 << 10;
+
+    /**
+     * Produces the output written to the temp file
+     */
+    interface Body {
+        /**
+         * @param out sink for the output. Flushed and closed by AtomicOutput
+         * @throws IOException if producing the output fails
+         */
+        void writeTo(Writer out) throws IOException;
+    }
+
+    private AtomicOutput() {
+    }
+
+    /**
+     * Writes the output of body to target, replacing it atomically
+     *
+     * @param target file to create or replace
+     * @param body produces the output
+     * @return number of bytes written to target
+     * @throws IOException if writing, syncing or renaming fails
+     */
+    static long write(Path target, Body body) throws IOException {
+        // Case: target exists. Replace the file behind any symlink
+        Path absolute = Files.exists(target)
+                ? target.toRealPath()
+                : target.toAbsolutePath();
+        Path dir = absolute.getParent();
+        Path temp = createTemp(dir, absolute.getFileName().toString());
+
+        long written;
+        boolean done = false;
+        try {
+            try (FileChannel channel = FileChannel.open(temp,
+                    StandardOpenOption.WRITE)) {
+                Writer out = Channels.newWriter(channel, encoder(), BUFFER_SIZE);
+                body.writeTo(out);
+                out.flush();
+                channel.force(true);
+                written = channel.size();
+            }
+
+            keepPermissions(absolute, temp);
+            Files.move(temp, absolute, StandardCopyOption.ATOMIC_MOVE);
+            done = true;
+        } finally {
+            // Case: failed part way. Target is untouched
+            if (!done) {
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        syncDirectory(dir);
+        return written;
+    }
+
+    // Creates an empty temp file next to the target. Unlike
+    // Files.createTempFile, the file gets the default mode for new files, so
+    // a new target ends up with it
+    private static Path createTemp(Path dir, String name) throws IOException {
+        while (true) {
+            Path temp = dir.resolve("." + name + "."
+                    + Long.toUnsignedString(ThreadLocalRandom.current().nextLong())
+                    + ".tmp");
+            try {
+                return Files.createFile(temp);
+            } catch (FileAlreadyExistsException e) {
+                // Case: name taken. Try another one
+            }
+        }
+    }
+
+    // Same replacement behavior as the OutputStreamWriter used for stdout
+    private static CharsetEncoder encoder() {
+        return Charset.defaultCharset().newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    // Keep the mode of a replaced file
+    private static void keepPermissions(Path target, Path temp)
+            throws IOException {
+        if (!Files.exists(target)) {
+            return;
+        }
+        try {
+            Files.setPosixFilePermissions(temp,
+                    Files.getPosixFilePermissions(target));
+        } catch (UnsupportedOperationException e) {
+            // Case: not a POSIX file system. Nothing to keep
+        }
+    }
+
+    // Makes the rename itself durable. Not supported on every platform
+    private static void syncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir,
+                StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Case: directories cannot be opened or synced here
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package edu.gatech.seclass.adjusttxt;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Scanning kernels over raw input bytes that look at 8 bytes at a time. Each
+ * step loads one long and tests all of its bytes with a few arithmetic
+ * operations (SWAR, "SIMD within a register"), so there is one load and one
+ * branch per 8 bytes instead of per byte. The tail of a range that does not
+ * fill a long is scanned byte by byte.
+ *
+ * <p>The byte tests are exact: unlike the common "has zero byte" trick, no
+ * borrow leaks from one byte into the next, so the matches can be counted
+ * as well as located.
+ */
+final class ByteKernels {
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    // Reads 8 bytes of a byte[] as one long, in native order
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(
+            long[].class, ByteOrder.nativeOrder());
+    private static final boolean NATIVE_BIG_ENDIAN =
+            ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN;
+
+    private ByteKernels() {
+    }
+
+    /**
+     * Finds the first occurrence of b in bytes [from, to). Positions are
+     * absolute, and the position and limit of bytes are left untouched.
+     *
+     * @param bytes bytes to scan
+     * @param from first byte to scan
+     * @param to end of the range (exclusive)
+     * @param b byte to find
+     * @return index of the first b, or -1 if there is none
+     */
+    static int indexOf(ByteBuffer bytes, int from, int to, byte b) {
+        long pattern = broadcast(b);
+        boolean bigEndian = bytes.order() == ByteOrder.BIG_ENDIAN;
+
+        int i = from;
+        for (; i <= to - Long.BYTES; i += Long.BYTES) {
+            long found = matches(bytes.getLong(i), pattern);
+            if (found != 0) {
+                return i + firstByte(found, bigEndian);
+            }
+        }
+
+        for (; i < to; i++) {
+            if (bytes.get(i) == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Counts the occurrences of b in bytes [from, to). Positions are
+     * absolute, and the position and limit of bytes are left untouched.
+     *
+     * @param bytes bytes to scan
+     * @param from first byte to scan
+     * @param to end of the range (exclusive)
+     * @param b byte to count
+     * @return number of b in the range
+     */
+    static long count(ByteBuffer bytes, int from, int to, byte b) {
+        long pattern = broadcast(b);
+        long count = 0;
+
+        int i = from;
+        for (; i <= to - Long.BYTES; i += Long.BYTES) {
+            count += Long.bitCount(matches(bytes.getLong(i), pattern));
+        }
+
+        for (; i < to; i++) {
+            if (bytes.get(i) == b) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Finds the length of the ASCII prefix of bytes [from, to)
+     *
+     * @param bytes bytes to scan
+     * @param from first byte to scan
+     * @param to end of the range (exclusive)
+     * @return index of the first byte above 0x7F, or to if there is none
+     */
+    static int asciiPrefix(byte[] bytes, int from, int to) {
+        int i = from;
+        for (; i <= to - Long.BYTES; i += Long.BYTES) {
+            long high = (long) LONGS.get(bytes, i) & HIGH_BITS;
+            if (high != 0) {
+                return i + firstByte(high, NATIVE_BIG_ENDIAN);
+            }
+        }
+
+        while (i < to && bytes[i] >= 0) {
+            i++;
+        }
+        return i;
+    }
+
+    // b repeated in all 8 bytes of a long
+    private static long broadcast(byte b) {
+        return (b & 0xFFL) * ONES;
+    }
+
+    // 0x80 in every byte of word equal to the matching byte of pattern, 0x00
+    // in every other byte. (x & 0x7F) + 0x7F sets the high bit of each byte
+    // that has a low bit set, without carrying into the next byte
+    private static long matches(long word, long pattern) {
+        long x = word ^ pattern;
+        return ~(((x & LOW_BITS) + LOW_BITS) | x | LOW_BITS);
+    }
+
+    // Offset of the first byte (in memory order) with its high bit set
+    private static int firstByte(long highBits, boolean bigEndian) {
+        return (bigEndian
+                ? Long.numberOfLeadingZeros(highBits)
+                : Long.numberOfTrailingZeros(highBits)) >>> 3;
+    }
+}
@@ -0,0 +1,443 @@
+package edu.gatech.seclass.adjusttxt;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UTFDataFormatException;
+import java.net.ConnectException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a warm JVM serving adjusttxt runs over a Unix domain socket, so
+ * short runs on small files reuse JIT-compiled code instead of starting a
+ * new JVM and running interpreted each time.
+ *
+ * <p>A client sends its working directory and command line. The daemon runs
+ * it like Main would, resolving relative paths against that directory, and
+ * streams stdout and stderr back as frames that the client copies onto its
+ * own stdout and stderr, so redirections and pipes behave as for a local
+ * run. File descriptors cannot be passed over a socket from Java, which is
+ * why the output is forwarded rather than the fd. Stdin is not forwarded
+ * either: runs reading "-" are left to the client to run locally.
+ *
+ * <p>Request: working directory, argument count and arguments, written with
+ * DataOutput.writeUTF / writeInt. Response: frames of a kind byte (STDOUT or
+ * STDERR), an int length and that many bytes, ended by an END byte. A
+ * command line that does not fit the request (an argument over 64 KB of
+ * modified UTF-8, more than MAX_ARGS arguments or more than
+ * MAX_REQUEST_BYTES in all) is run by the client.
+ *
+ * <p>A request must arrive within the request timeout, so idle connections
+ * cannot hold the workers. A run whose client disconnects stops at its next
+ * block of output, as stdout then reports an error.
+ */
+final class Daemon implements Closeable {
+    static final int END = 0;
+    static final int STDOUT = 1;
+    static final int STDERR = 2;
+
+    // Most arguments a request may carry
+    static final int MAX_ARGS = 1 << 16;
+
+    // Most bytes a request may take, the ARG_MAX of Linux. Bounds what a
+    // client can make the daemon allocate
+    static final int MAX_REQUEST_BYTES = 2 << 20;
+
+    // Time a client has to send its whole request
+    static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(5);
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path socket;
+    private final ServerSocketChannel server;
+    private final Duration requestTimeout;
+    private final ExecutorService pool;
+    private final ScheduledExecutorService timer;
+
+    private Daemon(Path socket, ServerSocketChannel server,
+                   Duration requestTimeout) {
+        this.socket = socket;
+        this.server = server;
+        this.requestTimeout = requestTimeout;
+        this.pool = Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors());
+        this.timer = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    /**
+     * Binds a daemon to socket. A socket file left behind by a daemon that
+     * is no longer running is replaced. The socket is only accessible to
+     * the current user, as runs read and write files with its permissions.
+     *
+     * @param socket path of the Unix domain socket
+     * @return daemon ready to {@link #serve()}
+     * @throws IOException if another daemon listens on socket, socket is
+     *                     not a socket, or binding fails
+     */
+    static Daemon bind(Path socket) throws IOException {
+        return bind(socket, REQUEST_TIMEOUT);
+    }
+
+    /**
+     * {@link #bind(Path)} with a request timeout other than
+     * REQUEST_TIMEOUT, so that tests do not wait for it
+     *
+     * @param requestTimeout time a client has to send its whole request
+     */
+    static Daemon bind(Path socket, Duration requestTimeout)
+            throws IOException {
+        UnixDomainSocketAddress address = UnixDomainSocketAddress.of(socket);
+
+        // Case: socket file exists. Only replace it if nobody listens on it
+        if (Files.exists(socket)) {
+            if (Files.isRegularFile(socket) || Files.isDirectory(socket)) {
+                throw new IOException("Not a socket: " + socket);
+            }
+            if (isListening(address)) {
+                throw new IOException("Daemon already listening on " + socket);
+            }
+            Files.delete(socket);
+        }
+
+        ServerSocketChannel server =
+                ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            bindPrivately(server, socket);
+        } catch (IOException e) {
+            server.close();
+            throw e;
+        }
+        return new Daemon(socket, server, requestTimeout);
+    }
+
+    /**
+     * Binds server to socket without a moment where other users could
+     * connect. The socket is bound inside a new directory only the current
+     * user can enter, made rw------- there, and then renamed into place
+     */
+    private static void bindPrivately(ServerSocketChannel server, Path socket)
+            throws IOException {
+        Path parent = socket.toAbsolutePath().getParent();
+
+        // Case: not a POSIX file system. Nothing to restrict
+        if (!parent.getFileSystem().supportedFileAttributeViews()
+                .contains("posix")) {
+            server.bind(UnixDomainSocketAddress.of(socket));
+            return;
+        }
+
+        Path dir = Files.createTempDirectory(parent, ".adjusttxt",
+                PosixFilePermissions.asFileAttribute(
+                        PosixFilePermissions.fromString("rwx------")));
+        try {
+            Path bound = dir.resolve("socket");
+            server.bind(UnixDomainSocketAddress.of(bound));
+            Files.setPosixFilePermissions(bound,
+                    PosixFilePermissions.fromString("rw-------"));
+            Files.move(bound, socket, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(dir.resolve("socket"));
+            Files.delete(dir);
+        }
+    }
+
+    /**
+     * @param address socket address to probe
+     * @return whether a daemon accepts connections on address
+     */
+    private static boolean isListening(UnixDomainSocketAddress address)
+            throws IOException {
+        try {
+            SocketChannel.open(address).close();
+            return true;
+        } catch (ConnectException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Accepts clients until {@link #close()} is called. Each client is run
+     * on the worker pool, so up to one run per processor proceeds at once
+     *
+     * @throws IOException if accepting a client fails
+     */
+    void serve() throws IOException {
+        while (true) {
+            SocketChannel client;
+            try {
+                client = this.server.accept();
+            } catch (ClosedChannelException e) {
+                // Case: daemon closed
+                return;
+            }
+            this.pool.execute(() -> handle(client));
+        }
+    }
+
+    /**
+     * Stops accepting clients and removes the socket file. Runs in progress
+     * are finished
+     */
+    @Override
+    public void close() throws IOException {
+        this.server.close();
+        this.pool.shutdown();
+        this.timer.shutdownNow();
+        Files.deleteIfExists(this.socket);
+    }
+
+    /**
+     * Runs one client's command line and streams its output back
+     *
+     * @param client connected client
+     */
+    private void handle(SocketChannel client) {
+        try (client) {
+            // Case: request not complete in time. Closing the client fails
+            // the blocked read
+            ScheduledFuture<?> deadline = this.timer.schedule(() -> {
+                try {
+                    client.close();
+                } catch (IOException e) {
+                    // Case: already closed
+                }
+            }, this.requestTimeout.toMillis(), TimeUnit.MILLISECONDS);
+
+            DataInputStream request = new DataInputStream(
+                    new BufferedInputStream(new BoundedInput(
+                            Channels.newInputStream(client),
+                            MAX_REQUEST_BYTES)));
+            File workingDir = new File(request.readUTF());
+            int count = request.readInt();
+            if (count < 0 || count > MAX_ARGS) {
+                throw new IOException("Invalid argument count: " + count);
+            }
+            String[] args = new String[count];
+            for (int i = 0; i < count; i++) {
+                args[i] = request.readUTF();
+            }
+            if (!deadline.cancel(false)) {
+                return;
+            }
+
+            DataOutputStream response = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(client),
+                            BUFFER_SIZE));
+            PrintStream stdout = new PrintStream(new FrameOutput(response, STDOUT));
+            PrintStream stderr = new PrintStream(new FrameOutput(response, STDERR));
+
+            // Case: stdin. The daemon's own stdin is not the client's
+            if (Arrays.asList(args).contains(LinePipeline.STDIN)) {
+                Main.usage(stderr);
+            } else {
+                Main.run(args, workingDir, stdout, stderr);
+            }
+
+            stdout.flush();
+            stderr.flush();
+            synchronized (response) {
+                response.writeByte(END);
+                response.flush();
+            }
+        } catch (IOException e) {
+            // Case: client gone or request malformed. Nobody to report to
+        } catch (RuntimeException | Error e) {
+            // Case: bug or out of memory. The client sees the connection
+            // close, so report it where the daemon was started
+            System.err.println("adjusttxt: daemon: " + e);
+        }
+    }
+
+    /**
+     * Forwards a command line to the daemon on socket and copies its output
+     * onto stdout and stderr
+     *
+     * @param socket path of the Unix domain socket
+     * @param args command line to run
+     * @param stdout stream the adjusted text is copied to
+     * @param stderr stream the run's errors are copied to
+     * @return false if nothing was run because no daemon is listening, the
+     *         run reads stdin, or the command line does not fit a request,
+     *         so the caller should run it locally
+     * @throws IOException if the daemon goes away during the run
+     */
+    static boolean forward(Path socket, String[] args, PrintStream stdout,
+                           PrintStream stderr) throws IOException {
+        // Case: stdin. Only this process can read it
+        if (Arrays.asList(args).contains(LinePipeline.STDIN)) {
+            return false;
+        }
+
+        byte[] request = request(args);
+        if (request == null) {
+            return false;
+        }
+
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+        } catch (IOException e) {
+            // Case: no daemon listening
+            return false;
+        }
+
+        try (channel) {
+            OutputStream out = Channels.newOutputStream(channel);
+            out.write(request);
+            out.flush();
+
+            DataInputStream response = new DataInputStream(
+                    new BufferedInputStream(Channels.newInputStream(channel),
+                            BUFFER_SIZE));
+            byte[] buffer = new byte[BUFFER_SIZE];
+            for (int kind = response.readByte(); kind != END;
+                 kind = response.readByte()) {
+                PrintStream target = kind == STDOUT ? stdout : stderr;
+                int length = response.readInt();
+                while (length > 0) {
+                    int read = response.read(buffer, 0,
+                            Math.min(length, buffer.length));
+                    if (read < 0) {
+                        throw new EOFException("Daemon closed the connection");
+                    }
+                    target.write(buffer, 0, read);
+                    length -= read;
+                }
+
+                // Case: reader of stdout gone. Closing the connection stops
+                // the run on the daemon too
+                if (target == stdout && stdout.checkError()) {
+                    return true;
+                }
+            }
+            stdout.flush();
+            stderr.flush();
+        }
+        return true;
+    }
+
+    /**
+     * Encodes the request for a command line, before connecting, so that one
+     * the daemon would reject is run locally instead
+     *
+     * @param args command line to run
+     * @return request bytes, or null if args do not fit a request
+     * @throws IOException if encoding fails
+     */
+    private static byte[] request(String[] args) throws IOException {
+        if (args.length > MAX_ARGS) {
+            return null;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream request = new DataOutputStream(bytes);
+        try {
+            request.writeUTF(System.getProperty("user.dir"));
+            request.writeInt(args.length);
+            for (String arg : args) {
+                request.writeUTF(arg);
+            }
+        } catch (UTFDataFormatException e) {
+            // Case: a string over the 64 KB limit of writeUTF
+            return null;
+        }
+        return bytes.size() <= MAX_REQUEST_BYTES ? bytes.toByteArray() : null;
+    }
+
+    /**
+     * Fails reads past a limit, so a request cannot grow without bound
+     */
+    private static final class BoundedInput extends FilterInputStream {
+        private long remaining;
+
+        BoundedInput(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (this.remaining <= 0) {
+                throw new IOException("Request too large");
+            }
+            int read = super.read(b, off, (int) Math.min(len, this.remaining));
+            if (read > 0) {
+                this.remaining -= read;
+            }
+            return read;
+        }
+    }
+
+    /**
+     * Writes everything written to it as frames of one kind. stdout and
+     * stderr share the response, so frames are written whole under its lock
+     */
+    private static final class FrameOutput extends OutputStream {
+        private final DataOutputStream response;
+        private final int kind;
+
+        FrameOutput(DataOutputStream response, int kind) {
+            this.response = response;
+            this.kind = kind;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            synchronized (this.response) {
+                this.response.writeByte(this.kind);
+                this.response.writeInt(len);
+                this.response.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (this.response) {
+                this.response.flush();
+            }
+        }
+    }
+}
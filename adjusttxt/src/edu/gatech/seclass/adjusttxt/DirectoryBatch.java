@@ -0,0 +1,132 @@
+package edu.gatech.seclass.adjusttxt;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Walks an input directory and adjusts every regular file in it with the
+ * same pipeline, writing each one to the same relative path under an output
+ * directory. Files are handed to a bounded worker pool largest first, so a
+ * single huge file starts right away instead of being the tail of the job.
+ *
+ * <p>Each output file is replaced atomically, so a file that fails leaves no
+ * partial output. It is reported on stderr, and the rest of the tree still
+ * runs. Total throughput is reported on stderr at the end.
+ */
+final class DirectoryBatch {
+    private DirectoryBatch() {
+    }
+
+    /**
+     * Adjusts every regular file under inputDir into outputDir
+     *
+     * @param inputDir directory to walk
+     * @param outputDir root of the mirrored output tree. Created if missing.
+     *                  Must not be inside inputDir
+     * @param pipeline compiled options
+     * @param workers number of worker threads
+     * @param err stream per-file errors and the final summary are reported on
+     * @return number of files that failed
+     * @throws IllegalArgumentException if outputDir is inside inputDir
+     * @throws IOException if walking inputDir fails
+     */
+    static int run(File inputDir, File outputDir, LinePipeline pipeline,
+                   int workers, PrintStream err) throws IOException {
+        Path inputRoot = inputDir.toPath().toAbsolutePath().normalize();
+        Path outputRoot = outputDir.toPath().toAbsolutePath().normalize();
+
+        // Case: output would be walked as input
+        if (outputRoot.startsWith(inputRoot)) {
+            throw new IllegalArgumentException(
+                    "Output directory is inside input directory: " + outputDir);
+        }
+
+        JfrEvents.Batch event = new JfrEvents.Batch();
+        event.begin();
+        long startTime = System.nanoTime();
+        List<Path> files = largestFirst(inputRoot);
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        List<Future<Long>> results = new ArrayList<>();
+        int failed = 0;
+        long bytes = 0;
+
+        try {
+            for (Path file : files) {
+                Path target = outputRoot.resolve(inputRoot.relativize(file));
+                results.add(pool.submit(() -> adjust(file, target, pipeline)));
+            }
+
+            for (int i = 0; i < files.size(); i++) {
+                try {
+                    bytes += results.get(i).get();
+                } catch (ExecutionException e) {
+                    failed++;
+                    FileBatch.report(err, files.get(i).toFile(),
+                            e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted", e);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.kind = "directory";
+            event.files = files.size();
+            event.failed = failed;
+            event.workers = workers;
+            event.commit();
+        }
+
+        // Report total throughput
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        double megabytes = bytes / (1024.0 * 1024.0);
+        err.printf("adjusttxt: %d files, %.1f MB in %.2f s (%.1f MB/s)%n",
+                files.size() - failed, megabytes, seconds,
+                seconds > 0 ? megabytes / seconds : 0.0);
+
+        return failed;
+    }
+
+    // Lists every regular file under root, largest first
+    private static List<Path> largestFirst(Path root) throws IOException {
+        Map<Path, Long> sizes = new HashMap<>();
+        try (Stream<Path> walk = Files.walk(root)) {
+            walk.filter(Files::isRegularFile)
+                    .forEach(file -> sizes.put(file, file.toFile().length()));
+        }
+
+        List<Path> files = new ArrayList<>(sizes.keySet());
+        files.sort(Comparator.comparing(sizes::get, Comparator.reverseOrder()));
+        return files;
+    }
+
+    // Adjusts one file into target. Returns the number of input bytes
+    private static long adjust(Path file, Path target, LinePipeline pipeline)
+            throws IOException {
+        Files.createDirectories(target.getParent());
+        long written = AtomicOutput.write(target,
+                out -> pipeline.run(file.toFile(), 1, out));
+        if (pipeline.stats() != null) {
+            pipeline.stats().bytesOut.add(written);
+        }
+        return file.toFile().length();
+    }
+}
@@ -0,0 +1,155 @@
+package edu.gatech.seclass.adjusttxt;
+
+import java.io.CharArrayWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Processes several input files in one JVM on a bounded worker pool. Each
+ * file is adjusted into its own buffer and the buffers are written out in
+ * argument order, so the output is the same as running the files one after
+ * the other. A file that fails is reported on stderr and skipped, and the
+ * rest of the batch still runs.
+ *
+ * <p>Only a bounded number of files are in flight at a time, holding at
+ * most BATCH_LIMIT bytes of input between them. Files larger than
+ * BUFFER_LIMIT, stdin and anything else that is not a regular file are not
+ * buffered: they are streamed straight to the output once every file
+ * before them has been written.
+ */
+final class FileBatch {
+    // Files up to this size are adjusted in memory by the worker pool
+    static final long BUFFER_LIMIT = 16L << 20;
+
+    // Input bytes the files in flight may add up to. Buffered as chars, and
+    // with the slack of a growing buffer, that is up to four times as much
+    // heap
+    static final long BATCH_LIMIT = 4 * BUFFER_LIMIT;
+
+    // Placeholder queued for a file that is streamed instead of buffered
+    private static final Future<CharArrayWriter> STREAMED =
+            CompletableFuture.completedFuture(null);
+
+    private FileBatch() {
+    }
+
+    /**
+     * Adjusts every file with the same pipeline and writes the results to
+     * out in argument order
+     *
+     * @param files input files, in argument order
+     * @param pipeline compiled options
+     * @param workers number of worker threads
+     * @param parallelism threads each streamed file is processed on
+     * @param out sink for the adjusted lines. Flushed after every file
+     * @param err stream per-file errors are reported on
+     * @return number of files that failed
+     * @throws IOException if writing to out fails
+     */
+    static int run(List<File> files, LinePipeline pipeline, int workers,
+                   int parallelism, Writer out, PrintStream err)
+            throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        Deque<Future<CharArrayWriter>> inFlight = new ArrayDeque<>();
+        int maxInFlight = 2 * workers;
+        long[] sizes = new long[files.size()];
+        long buffered = 0;
+        int failed = 0;
+
+        JfrEvents.Batch event = new JfrEvents.Batch();
+        event.begin();
+
+        try {
+            int next = 0;
+            for (int i = 0; i < files.size(); i++) {
+                // Keep the pool busy within BATCH_LIMIT. Streamed files are
+                // left for later
+                while (next < files.size() && inFlight.size() < maxInFlight) {
+                    File file = files.get(next);
+                    if (isStreamed(file)) {
+                        inFlight.add(STREAMED);
+                    } else {
+                        long size = file.length();
+                        if (buffered + size > BATCH_LIMIT && buffered > 0) {
+                            break;
+                        }
+                        sizes[next] = size;
+                        buffered += size;
+                        inFlight.add(pool.submit(() -> adjust(file, pipeline)));
+                    }
+                    next++;
+                }
+
+                File file = files.get(i);
+                Future<CharArrayWriter> result = inFlight.poll();
+                buffered -= sizes[i];
+                try {
+                    if (result == STREAMED) {
+                        // Case: large or not a regular file. Stream it on
+                        // this thread
+                        pipeline.run(file, parallelism, out);
+                    } else {
+                        result.get().writeTo(out);
+                    }
+                } catch (ExecutionException e) {
+                    failed++;
+                    report(err, file, e.getCause());
+                } catch (StdoutOutput.Closed e) {
+                    // Case: reader of stdout gone. No file is left to write
+                    throw e;
+                } catch (IOException | RuntimeException e) {
+                    failed++;
+                    report(err, file, e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted", e);
+                }
+                out.flush();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.kind = "files";
+            event.files = files.size();
+            event.failed = failed;
+            event.workers = workers;
+            event.commit();
+        }
+
+        return failed;
+    }
+
+    // Adjusts a whole file into memory
+    private static CharArrayWriter adjust(File file, LinePipeline pipeline)
+            throws IOException {
+        CharArrayWriter fileOut = new CharArrayWriter();
+        pipeline.run(file, 1, fileOut);
+        return fileOut;
+    }
+
+    // Stdin, named pipes and large files are streamed instead of buffered.
+    // Their size is unknown or too large to hold
+    private static boolean isStreamed(File file) {
+        return LinePipeline.STDIN.equals(file.getPath()) || !file.isFile()
+                || file.length() > BUFFER_LIMIT;
+    }
+
+    // Prints "adjusttxt: FILE: message" to err
+    static void report(PrintStream err, File file, Throwable e) {
+        String message = e.getMessage() != null ? e.getMessage() : e.toString();
+        err.println("adjusttxt: " + file + ": " + message);
+    }
+}
@@ -0,0 +1,184 @@
+package edu.gatech.seclass.adjusttxt;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder events, so that a recording can attribute time to
+ * files, options and stages instead of only showing generic frames. Without
+ * a recording that enables them, creating an event and checking
+ * isEnabled() is all they cost, and nothing is counted per line. With only
+ * Job enabled, lines and bytes are counted per line, but nothing is timed
+ * per line unless Stage is enabled too.
+ *
+ * <p>Job and Chunk events are only committed above their threshold, which
+ * a recording may override. Stage events are disabled by default, as there
+ * are several per job.
+ */
+final class JfrEvents {
+    private static final String CATEGORY = "adjusttxt";
+
+    private JfrEvents() {
+    }
+
+    /**
+     * One input file run through a pipeline, from LinePipeline.run()
+     */
+    @Name("edu.gatech.seclass.adjusttxt.Job")
+    @Label("Job")
+    @Category(CATEGORY)
+    @Description("One input file adjusted by adjusttxt")
+    @Threshold("10 ms")
+    @StackTrace(false)
+    static final class Job extends Event {
+        @Label("File")
+        String file;
+
+        @Label("Options")
+        String options;
+
+        @Label("Charset")
+        String charset;
+
+        @Label("Parallelism")
+        int parallelism;
+
+        @Label("Bytes In")
+        @DataAmount
+        long bytesIn;
+
+        @Label("Lines Read")
+        long linesRead;
+
+        @Label("Lines Skipped")
+        long linesSkipped;
+
+        @Label("Lines Written")
+        long linesWritten;
+
+        @Label("CPU Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long cpuTime;
+
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+
+        @Label("Error")
+        String error;
+    }
+
+    /**
+     * One chunk of a file processed by a ParallelInput worker
+     */
+    @Name("edu.gatech.seclass.adjusttxt.Chunk")
+    @Label("Chunk")
+    @Category(CATEGORY)
+    @Description("One newline-aligned chunk of a file processed with -j")
+    @Threshold("10 ms")
+    @StackTrace(false)
+    static final class Chunk extends Event {
+        @Label("Offset")
+        @DataAmount
+        long offset;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("First Line")
+        @Description("Line number of the first line, or 0 if no option uses line numbers")
+        long firstLine;
+    }
+
+    /**
+     * Several files adjusted by FileBatch or DirectoryBatch
+     */
+    @Name("edu.gatech.seclass.adjusttxt.Batch")
+    @Label("Batch")
+    @Category(CATEGORY)
+    @Description("Several files adjusted in one run")
+    @StackTrace(false)
+    static final class Batch extends Event {
+        @Label("Kind")
+        @Description("\"files\" for several FILE arguments, \"directory\" for -d")
+        String kind;
+
+        @Label("Files")
+        int files;
+
+        @Label("Failed")
+        int failed;
+
+        @Label("Workers")
+        int workers;
+    }
+
+    /**
+     * Time spent in one stage over a whole job, summed over its lines
+     */
+    @Name("edu.gatech.seclass.adjusttxt.Stage")
+    @Label("Stage")
+    @Category(CATEGORY)
+    @Description("Time one stage took over all lines of a job")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class Stage extends Event {
+        @Label("File")
+        String file;
+
+        @Label("Stage")
+        String stage;
+
+        @Label("Stage Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long stageTime;
+    }
+
+    /**
+     * Commits a finished job, if it is above the threshold, and one Stage
+     * event for every stage the job spent time in
+     *
+     * @param event job event, ended
+     * @param file input file
+     * @param options options of the pipeline, as given on the command line
+     * @param charset charset of the input
+     * @param parallelism number of worker threads
+     * @param stats counters of this job only
+     */
+    static void commit(Job event, String file, String options, String charset,
+                       int parallelism, RunStats stats) {
+        if (event.shouldCommit()) {
+            event.file = file;
+            event.options = options;
+            event.charset = charset;
+            event.parallelism = parallelism;
+            event.bytesIn = stats.bytesIn.sum();
+            event.linesRead = stats.linesRead.sum();
+            event.linesSkipped = stats.linesSkipped.sum();
+            event.linesWritten = stats.linesWritten.sum();
+            event.cpuTime = stats.cpuNanos.sum();
+            event.allocated = stats.allocatedBytes.sum();
+            event.commit();
+        }
+
+        for (int i = 0; i < RunStats.STAGES.length; i++) {
+            long nanos = stats.stageNanos[i].sum();
+            Stage stage = new Stage();
+            if (nanos > 0 && stage.shouldCommit()) {
+                stage.file = file;
+                stage.stage = RunStats.STAGES[i];
+                stage.stageTime = nanos;
+                stage.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package edu.gatech.seclass.adjusttxt;
+
+import java.nio.CharBuffer;
+
+/**
+ * Reusable, mutable holder for the line currently going through a
+ * LinePipeline. The line is the window [start, end) of chars. Stages edit it
+ * in place: trims only move start and end, and removals compact the array,
+ * so a line is decoded into the buffer once and copied once more into the
+ * output. One LineBuffer is used per thread and run, never shared.
+ */
+final class LineBuffer implements CharSequence {
+    char[] chars;
+    int start;
+    int end;
+
+    private CharBuffer view;
+    private char[] spare = new char[0];
+    private CharBuffer spareView = CharBuffer.wrap(this.spare);
+
+    LineBuffer(int capacity) {
+        this.chars = new char[capacity];
+        this.view = CharBuffer.wrap(this.chars);
+    }
+
+    /**
+     * Empties the buffer and makes room for at least capacity chars
+     *
+     * @param capacity number of chars about to be written
+     * @return CharBuffer over chars, positioned at 0, to decode the line into.
+     *         The caller sets end to its position afterwards
+     */
+    CharBuffer clear(int capacity) {
+        if (this.chars.length < capacity) {
+            this.chars = new char[Math.max(capacity, this.chars.length * 2)];
+            this.view = CharBuffer.wrap(this.chars);
+        }
+        this.start = 0;
+        this.end = 0;
+        this.view.clear();
+        return this.view;
+    }
+
+    /**
+     * Replaces the contents of the buffer with line
+     *
+     * @param line new contents
+     */
+    void set(String line) {
+        clear(line.length());
+        line.getChars(0, line.length(), this.chars, 0);
+        this.end = line.length();
+    }
+
+    /**
+     * Second array a stage can build a new line in before calling
+     * {@link #swap}
+     *
+     * @param capacity number of chars needed
+     * @return spare array with at least capacity chars
+     */
+    char[] spare(int capacity) {
+        if (this.spare.length < capacity) {
+            this.spare = new char[Math.max(capacity, this.chars.length)];
+            this.spareView = CharBuffer.wrap(this.spare);
+        }
+        return this.spare;
+    }
+
+    /**
+     * Makes the spare array the current line, holding [0, length), and keeps
+     * the old array as the next spare
+     *
+     * @param length length of the line built in the spare array
+     */
+    void swap(int length) {
+        char[] current = this.chars;
+        this.chars = this.spare;
+        this.spare = current;
+
+        CharBuffer currentView = this.view;
+        this.view = this.spareView;
+        this.spareView = currentView;
+        this.start = 0;
+        this.end = length;
+    }
+
+    @Override
+    public int length() {
+        return this.end - this.start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return this.chars[this.start + index];
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+        return new String(this.chars, this.start + from, to - from);
+    }
+
+    @Override
+    public String toString() {
+        return new String(this.chars, this.start, length());
+    }
+}
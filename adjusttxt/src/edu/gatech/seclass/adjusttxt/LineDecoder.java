@@ -0,0 +1,143 @@
+package edu.gatech.seclass.adjusttxt;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes the bytes of one line straight into a LineBuffer, reusing the same
+ * CharsetDecoder for every line. Malformed input is replaced, the same as
+ * FileReader does. Not thread-safe: one LineDecoder is used per thread and
+ * run.
+ *
+ * <p>Most input is plain ASCII, so common charsets skip the decoder where
+ * they can: ISO-8859-1 maps every byte straight to a char, and US-ASCII and
+ * UTF-8 map ASCII bytes straight to chars. UTF-8 only hands the line to the
+ * decoder from its first non-ASCII byte on.
+ */
+final class LineDecoder {
+    private static final char REPLACEMENT = '\ufffd';
+
+    private enum FastPath { NONE, ASCII, UTF_8, LATIN_1 }
+
+    private final CharsetDecoder decoder;
+    private final FastPath fastPath;
+    private byte[] bytes = new byte[256];
+
+    LineDecoder(Charset charset) {
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        if (charset.equals(StandardCharsets.ISO_8859_1)) {
+            this.fastPath = FastPath.LATIN_1;
+        } else if (charset.equals(StandardCharsets.US_ASCII)) {
+            this.fastPath = FastPath.ASCII;
+        } else if (charset.equals(StandardCharsets.UTF_8)) {
+            this.fastPath = FastPath.UTF_8;
+        } else {
+            this.fastPath = FastPath.NONE;
+        }
+    }
+
+    /**
+     * Decodes the remaining bytes of in into line, replacing its contents
+     *
+     * @param in bytes of the line, without its line separator. Consumed
+     * @param line buffer to decode into
+     */
+    void decode(ByteBuffer in, LineBuffer line) {
+        int length = in.remaining();
+
+        switch (this.fastPath) {
+            case LATIN_1:
+                decodeLatin1(in, line.clear(length));
+                line.end = length;
+                return;
+            case ASCII:
+                decodeAscii(in, line.clear(length));
+                line.end = length;
+                return;
+            case UTF_8:
+                decodeUtf8(in, line);
+                return;
+            default:
+                decodeFully(in, line);
+        }
+    }
+
+    // Every byte is one char
+    private void decodeLatin1(ByteBuffer in, CharBuffer target) {
+        int length = in.remaining();
+        byte[] src = read(in, length);
+        char[] dst = target.array();
+        for (int i = 0; i < length; i++) {
+            dst[i] = (char) (src[i] & 0xFF);
+        }
+    }
+
+    // Every byte is one char. Bytes above 0x7F are malformed
+    private void decodeAscii(ByteBuffer in, CharBuffer target) {
+        int length = in.remaining();
+        byte[] src = read(in, length);
+        char[] dst = target.array();
+        for (int i = 0; i < length; i++) {
+            byte b = src[i];
+            dst[i] = b >= 0 ? (char) b : REPLACEMENT;
+        }
+    }
+
+    // Copies the ASCII prefix and decodes the rest of the line, if any
+    private void decodeUtf8(ByteBuffer in, LineBuffer line) {
+        int start = in.position();
+        int length = in.remaining();
+        byte[] src = read(in, length);
+        CharBuffer target = line.clear(length);
+        char[] dst = target.array();
+
+        int i = ByteKernels.asciiPrefix(src, 0, length);
+        for (int j = 0; j < i; j++) {
+            dst[j] = (char) src[j];
+        }
+
+        // Case: pure ASCII line
+        if (i == length) {
+            line.end = length;
+            return;
+        }
+
+        // Case: non-ASCII byte. Decode from there on after the ASCII prefix
+        in.position(start + i);
+        target.position(i);
+        finish(in, target);
+        line.end = target.position();
+    }
+
+    // General path through the decoder
+    private void decodeFully(ByteBuffer in, LineBuffer line) {
+        int capacity = (int) Math.ceil(in.remaining()
+                * (double) this.decoder.maxCharsPerByte());
+        CharBuffer target = line.clear(capacity);
+        finish(in, target);
+        line.end = target.position();
+    }
+
+    // Runs the decoder over the rest of in
+    private void finish(ByteBuffer in, CharBuffer target) {
+        this.decoder.reset();
+        this.decoder.decode(in, target, true);
+        this.decoder.flush(target);
+    }
+
+    // Bulk-copies the remaining bytes of in into the reused byte array
+    private byte[] read(ByteBuffer in, int length) {
+        if (this.bytes.length < length) {
+            this.bytes = new byte[Math.max(length, this.bytes.length * 2)];
+        }
+        in.get(this.bytes, 0, length);
+        return this.bytes;
+    }
+}
@@ -0,0 +1,203 @@
+package edu.gatech.seclass.adjusttxt;
+
+/**
+ * Hand-written, single-pass replacements for the regular expressions the
+ * -w and -r options used to run on every line. The kernels edit a
+ * LineBuffer in place. Whitespace means exactly what "\s" matches in a
+ * java.util.regex.Pattern: [ \t\n\x0B\f\r].
+ *
+ * <p>Unlike ByteKernels, these scan one char at a time. They run on the
+ * decoded char[], and Java 21 has no way to load several chars of a char[]
+ * as one long except MemorySegment, a preview API in 21, and the incubating
+ * Vector API. pom.xml could pass the compiler flags for either, but every
+ * java -jar and embedding application would then have to start the JVM
+ * with --enable-preview or --add-modules jdk.incubator.vector.
+ */
+final class LineKernels {
+    private LineKernels() {
+    }
+
+    /**
+     * Same as Character class "\s" in java.util.regex
+     *
+     * @param c character to check
+     * @return True if c is one of ' ', '\t', '\n', '\u000B', '\f', '\r'
+     */
+    static boolean isWhitespace(char c) {
+        return c == ' ' || (c >= '\t' && c <= '\r');
+    }
+
+    /**
+     * Equivalent to line.trim().isEmpty()
+     *
+     * @param line line in the file being processed
+     * @return True if every char of line is at most ' '
+     */
+    static boolean isBlank(LineBuffer line) {
+        char[] chars = line.chars;
+        for (int i = line.start; i < line.end; i++) {
+            if (chars[i] > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Equivalent to line.replaceAll("^\\s+", ""). Only moves line.start.
+     *
+     * @param line line in the file being processed
+     */
+    static void stripLeading(LineBuffer line) {
+        char[] chars = line.chars;
+        int start = line.start;
+        while (start < line.end && isWhitespace(chars[start])) {
+            start++;
+        }
+        line.start = start;
+    }
+
+    /**
+     * Equivalent to line.replaceAll("\\s+$", ""). Only moves line.end.
+     *
+     * <p>Without MULTILINE, "$" also matches right before a final line
+     * terminator. The ones "\s" does not already cover ('\u0085',
+     * '\u2028', '\u2029') are kept, and the whitespace before them is
+     * removed.
+     *
+     * @param line line in the file being processed
+     */
+    static void stripTrailing(LineBuffer line) {
+        char[] chars = line.chars;
+        int end = line.end;
+        if (end > line.start && isFinalTerminator(chars[end - 1])) {
+            char terminator = chars[end - 1];
+            int start = trailingWhitespaceStart(line, end - 1);
+            chars[start] = terminator;
+            line.end = start + 1;
+            return;
+        }
+
+        line.end = trailingWhitespaceStart(line, end);
+    }
+
+    /**
+     * Equivalent to line.replaceAll("\\s+", ""). Compacts the line in place.
+     *
+     * @param line line in the file being processed
+     */
+    static void removeAll(LineBuffer line) {
+        char[] chars = line.chars;
+        int end = line.end;
+        int count = line.start;
+        for (int i = line.start; i < end; i++) {
+            char c = chars[i];
+            if (!isWhitespace(c)) {
+                chars[count++] = c;
+            }
+        }
+        line.end = count;
+    }
+
+    /**
+     * Equivalent to new StringBuilder(line).reverse(). Reverses the line in
+     * place, keeping surrogate pairs in order.
+     *
+     * @param line line in the file being processed
+     */
+    static void reverseText(LineBuffer line) {
+        char[] chars = line.chars;
+        boolean hasSurrogates = false;
+        for (int i = line.start, j = line.end - 1; i < j; i++, j--) {
+            char c = chars[i];
+            chars[i] = chars[j];
+            chars[j] = c;
+            hasSurrogates |= Character.isSurrogate(c)
+                    || Character.isSurrogate(chars[i]);
+        }
+
+        // Middle char of an odd-length line is not visited above
+        if ((line.length() & 1) == 1) {
+            hasSurrogates |= Character.isSurrogate(
+                    chars[line.start + line.length() / 2]);
+        }
+
+        if (hasSurrogates) {
+            restoreSurrogatePairs(line);
+        }
+    }
+
+    /**
+     * Reverses the word order of line, keeping every whitespace character.
+     * Equivalent to splitting on "(?<=\\s)|(?=\\s)" and joining the pieces
+     * in reverse order: words stay intact, and each whitespace character is
+     * its own piece. Lines without whitespace are left untouched.
+     *
+     * @param line line in the file being processed
+     */
+    static void reverseWords(LineBuffer line) {
+        char[] chars = line.chars;
+        int start = line.start;
+        int end = line.end;
+        int i = end - 1;
+        while (i >= start && !isWhitespace(chars[i])) {
+            i--;
+        }
+
+        // Case: no whitespace. The line is a single word
+        if (i < start) {
+            return;
+        }
+
+        // Scan tokens from the end of the line into the spare array
+        char[] out = line.spare(end - start);
+        int count = end - (i + 1);
+        System.arraycopy(chars, i + 1, out, 0, count);
+        while (i >= start) {
+            char c = chars[i];
+            if (isWhitespace(c)) {
+                out[count++] = c;
+                i--;
+                continue;
+            }
+
+            int wordEnd = i + 1;
+            while (i >= start && !isWhitespace(chars[i])) {
+                i--;
+            }
+            System.arraycopy(chars, i + 1, out, count, wordEnd - (i + 1));
+            count += wordEnd - (i + 1);
+        }
+        line.swap(count);
+    }
+
+    // Finds where the whitespace run ending at end starts
+    private static int trailingWhitespaceStart(LineBuffer line, int end) {
+        char[] chars = line.chars;
+        int start = end;
+        while (start > line.start && isWhitespace(chars[start - 1])) {
+            start--;
+        }
+        return start;
+    }
+
+    // Line terminators recognized by "$" that "\s" does not match
+    private static boolean isFinalTerminator(char c) {
+        return c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    // Swaps back low-high surrogate pairs produced by reversing the line
+    private static void restoreSurrogatePairs(LineBuffer line) {
+        char[] chars = line.chars;
+        for (int i = line.start; i < line.end - 1; i++) {
+            char c2 = chars[i];
+            if (Character.isLowSurrogate(c2)) {
+                char c1 = chars[i + 1];
+                if (Character.isHighSurrogate(c1)) {
+                    chars[i++] = c1;
+                    chars[i] = c2;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,504 @@
+package edu.gatech.seclass.adjusttxt;
+
+import edu.gatech.seclass.adjusttxt.AdjustTxtInterface.LineToSkip;
+import edu.gatech.seclass.adjusttxt.AdjustTxtInterface.RemoveSpaces;
+import edu.gatech.seclass.adjusttxt.AdjustTxtInterface.ReverseLine;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compiled form of the adjusttxt options, shared by Main and AdjustTxt. Each
+ * toggled option becomes one stage, in the order -s -> -x -> -w -> -r.
+ * Options that are not toggled have no stage at all, so no per-line work is
+ * spent checking them. The -p prefix is written straight to the output.
+ *
+ * <p>Stages edit a reusable LineBuffer in place, so a line is only copied
+ * when it is written out. A pipeline holds no per-line state and can be
+ * shared between threads.
+ *
+ * <p>With --stats ({@link #withStats}) or a flight recording that enables
+ * JfrEvents.Job, every run() counts lines and bytes into a RunStats of its
+ * own, which is added to the run's stats and the Job event once the file is
+ * done. Every stage, the prefix and the write are only timed per line for
+ * --stats or when JfrEvents.Stage is enabled too, as the Job event has no
+ * use for stage times. Otherwise, no counting is done.
+ */
+final class LinePipeline {
+    /**
+     * A single compiled option applied to one line
+     */
+    interface Stage {
+        /**
+         * @param lineNumber current line number in file, starting at 1
+         * @param line current line, without its terminator. Edited in
+         *             place
+         * @return False to drop the line from the output
+         */
+        boolean apply(long lineNumber, LineBuffer line);
+    }
+
+    // FILE argument that reads stdin
+    static final String STDIN = "-";
+
+    private final Stage[] stages;
+    // RunStats.STAGES index of each stage
+    private final int[] stageIds;
+    private final String prefix;
+    private final boolean usesLineNumbers;
+    private final Charset charset;
+    // Options as given on the command line, for JfrEvents
+    private final String options;
+    // Stats of the whole run (--stats). Null if not toggled
+    private final RunStats runStats;
+    // Stats of the current job, only set on the pipeline run() creates for
+    // one file
+    private final RunStats stats;
+    // Whether stages, prefix and write are timed into stats
+    private final boolean timed;
+
+    private LinePipeline(Stage[] stages, int[] stageIds, String prefix,
+                         boolean usesLineNumbers, Charset charset,
+                         String options, RunStats runStats, RunStats stats,
+                         boolean timed) {
+        this.stages = stages;
+        this.stageIds = stageIds;
+        this.prefix = prefix;
+        this.usesLineNumbers = usesLineNumbers;
+        this.charset = charset;
+        this.options = options;
+        this.runStats = runStats;
+        this.stats = stats;
+        this.timed = timed;
+    }
+
+    /**
+     * Compiles the given options into a pipeline holding only the active
+     * stages. Null (or false) means the option is not toggled.
+     *
+     * @param lineToSkip -s option
+     * @param removeSpaces -w option
+     * @param removeEmptyLines -x option
+     * @param reverseLine -r option
+     * @param prefix -p option. Null or empty adds no prefix
+     * @param charset --charset option. Null decodes the input with the
+     *                platform default charset
+     * @return compiled pipeline
+     */
+    static LinePipeline compile(LineToSkip lineToSkip,
+                                RemoveSpaces removeSpaces,
+                                boolean removeEmptyLines,
+                                ReverseLine reverseLine,
+                                String prefix,
+                                Charset charset) {
+        List<Stage> stages = new ArrayList<>();
+        List<Integer> stageIds = new ArrayList<>();
+        List<String> options = new ArrayList<>();
+
+        // Handle -s option. Skip even / odd line
+        if (lineToSkip != null) {
+            int skip = lineToSkip == LineToSkip.odd ? 1 : 0;
+            stages.add((lineNumber, line) -> (lineNumber % 2) != skip);
+            stageIds.add(RunStats.SKIP_LINE);
+            options.add("-s " + skip);
+        }
+
+        // Handle -x option. Skip empty lines
+        if (removeEmptyLines) {
+            stages.add((lineNumber, line) -> !LineKernels.isBlank(line));
+            stageIds.add(RunStats.REMOVE_EMPTY_LINES);
+            options.add("-x");
+        }
+
+        // Handle -w option
+        if (removeSpaces != null) {
+            stages.add(spacingStage(removeSpaces));
+            stageIds.add(RunStats.PROCESS_SPACING);
+            options.add("-w " + removeSpaces);
+        }
+
+        // Handle -r option
+        if (reverseLine != null) {
+            stages.add(reversalStage(reverseLine));
+            stageIds.add(RunStats.PROCESS_REVERSAL);
+            options.add("-r " + reverseLine);
+        }
+
+        if (prefix != null && !prefix.isEmpty()) {
+            options.add("-p " + prefix);
+        }
+
+        return new LinePipeline(stages.toArray(new Stage[0]),
+                stageIds.stream().mapToInt(Integer::intValue).toArray(),
+                prefix == null ? "" : prefix, lineToSkip != null,
+                charset == null ? Charset.defaultCharset() : charset,
+                String.join(" ", options), null, null, false);
+    }
+
+    /**
+     * Copies this pipeline into one that also records its work in stats:
+     * lines and bytes read and written, the time spent in every stage, and
+     * the CPU time and allocation of the threads that run it
+     *
+     * @param stats counters to add to. May be shared by several pipelines
+     *              and threads
+     * @return pipeline with the same stages, counted into stats
+     */
+    LinePipeline withStats(RunStats stats) {
+        return new LinePipeline(this.stages, this.stageIds, this.prefix,
+                this.usesLineNumbers, this.charset, this.options, stats, null,
+                false);
+    }
+
+    /**
+     * @return counters of the whole run, or null if this pipeline was not
+     *         compiled {@link #withStats}
+     */
+    RunStats stats() {
+        return this.runStats;
+    }
+
+    /**
+     * Copies this pipeline into one for a single job, counting into stats
+     *
+     * @param stats counters of the job
+     * @param timed whether every stage, the prefix and the write are also
+     *              timed into stats
+     */
+    private LinePipeline forJob(RunStats stats, boolean timed) {
+        // Case: only counting. The stages run as compiled
+        if (!timed) {
+            return new LinePipeline(this.stages, this.stageIds, this.prefix,
+                    this.usesLineNumbers, this.charset, this.options,
+                    this.runStats, stats, false);
+        }
+
+        Stage[] timedStages = new Stage[this.stages.length];
+        for (int i = 0; i < timedStages.length; i++) {
+            Stage stage = this.stages[i];
+            LongAdder nanos = stats.stageNanos[this.stageIds[i]];
+            timedStages[i] = (lineNumber, line) -> {
+                long start = System.nanoTime();
+                boolean keep = stage.apply(lineNumber, line);
+                nanos.add(System.nanoTime() - start);
+                return keep;
+            };
+        }
+
+        return new LinePipeline(timedStages, this.stageIds, this.prefix,
+                this.usesLineNumbers, this.charset, this.options,
+                this.runStats, stats, true);
+    }
+
+    /**
+     * Runs work, measuring the current thread into the stats of the current
+     * job if there are any. Worker threads wrap their share of a job in
+     * this.
+     *
+     * @param work work to run
+     * @throws IOException if work fails
+     */
+    void measure(RunStats.Work work) throws IOException {
+        if (this.stats == null) {
+            work.run();
+        } else {
+            this.stats.measure(work);
+        }
+    }
+
+    /**
+     * Reports the progress of the current job to the stats of the run. Input
+     * engines call this after every block of input they scan.
+     */
+    void progress() {
+        if (this.stats != null && this.runStats != null) {
+            this.runStats.progress(this.stats);
+        }
+    }
+
+    /**
+     * Whether any stage depends on the line number. If not, callers can skip
+     * counting lines ahead of time.
+     *
+     * @return True if -s is toggled
+     */
+    boolean usesLineNumbers() {
+        return this.usesLineNumbers;
+    }
+
+    /**
+     * Runs a single line through all active stages
+     *
+     * @param lineNumber current line number in file, starting at 1
+     * @param line current line, without its terminator. Edited in place
+     * @return False if the line is skipped
+     */
+    boolean apply(long lineNumber, LineBuffer line) {
+        for (Stage stage : this.stages) {
+            if (!stage.apply(lineNumber, line)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Runs a single line through all active stages and writes it to out
+     * (with the -p prefix and followed by its original terminator), unless
+     * the line is skipped
+     *
+     * @param lineNumber current line number in file, starting at 1
+     * @param line current line, without its terminator. Edited in place
+     * @param terminator "\n" or "\r\n" the line ended with in the input
+     * @param out sink for the adjusted lines
+     * @throws IOException if writing to out fails
+     */
+    void emit(long lineNumber, LineBuffer line, String terminator, Writer out)
+            throws IOException {
+        // Case: --stats or a recording. Count the line
+        if (this.stats != null) {
+            emitCounted(lineNumber, line, terminator, out);
+            return;
+        }
+
+        if (apply(lineNumber, line)) {
+            out.write(this.prefix);
+            out.write(line.chars, line.start, line.length());
+            out.write(terminator);
+        }
+    }
+
+    /**
+     * Processes input file, writing each adjusted line to out as soon as it
+     * is produced so memory stays bounded regardless of file size. The file
+     * is opened exactly once: the trailing "\n" is checked on the open
+     * channel before any output is written, then the file is memory-mapped
+     * unless its charset cannot be scanned as raw bytes. Each line keeps the
+     * "\n" or "\r\n" it ended with.
+     *
+     * <p>A file named {@link #STDIN} reads stdin instead, and files that are
+     * not regular files (such as named pipes) are read as a stream. Their
+     * trailing "\n" is checked at EOF, as it is for charsets that are
+     * decoded before scanning: every complete line has been written to out
+     * by then, and the caller flushes them before reporting the error.
+     *
+     * @param file input file
+     * @param parallelism number of worker threads. 1 processes the file
+     *                    sequentially
+     * @param out sink for the adjusted lines. Flushing is left to the caller
+     * @throws IllegalArgumentException if the file does not end with newline
+     * @throws IOException if reading the file or writing to out fails
+     */
+    void run(File file, int parallelism, Writer out) throws IOException {
+        JfrEvents.Job event = new JfrEvents.Job();
+
+        // Case: no --stats and no recording. Nothing is counted
+        if (this.runStats == null && !event.isEnabled()) {
+            runFile(file, parallelism, out);
+            return;
+        }
+
+        // Case: only the Job event. Stage times would go unused
+        boolean timed = this.runStats != null
+                || new JfrEvents.Stage().isEnabled();
+
+        RunStats jobStats = new RunStats();
+        event.begin();
+        try {
+            forJob(jobStats, timed).runFile(file, parallelism, out);
+        } catch (IOException | RuntimeException e) {
+            event.error = e.toString();
+            throw e;
+        } finally {
+            event.end();
+            if (this.runStats != null) {
+                this.runStats.add(jobStats);
+            }
+            JfrEvents.commit(event, file.getPath(), this.options,
+                    this.charset.name(), parallelism, jobStats);
+        }
+    }
+
+    // Body of run(). Counts into stats if this is the pipeline of a job
+    private void runFile(File file, int parallelism, Writer out)
+            throws IOException {
+        Charset charset = this.charset;
+
+        // Case: stdin. Streamed, and left open
+        if (STDIN.equals(file.getPath())) {
+            ReadableByteChannel in = countInput(Channels.newChannel(System.in));
+            measure(() -> runStream(in, charset, out));
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            // Case: named pipe or device. Cannot be mapped or seeked
+            if (!file.isFile()) {
+                measure(() -> runStream(countInput(channel), charset, out));
+                return;
+            }
+
+            // Case: charset cannot be scanned as bytes. Checked at EOF
+            if (!MappedInput.supports(charset)) {
+                measure(() -> runReader(
+                        Channels.newReader(countInput(channel), charset), out));
+                return;
+            }
+
+            long size = channel.size();
+            MappedInput.checkEndsWithNewline(channel, size);
+            if (this.stats != null) {
+                this.stats.bytesIn.add(size);
+            }
+
+            // Worker threads measure themselves. The calling thread mostly
+            // waits for them
+            if (parallelism > 1) {
+                ParallelInput.run(channel, size, charset, this, parallelism,
+                        out);
+            } else {
+                measure(() -> MappedInput.run(channel, 0, size, 1, charset,
+                        this, out));
+            }
+        }
+    }
+
+    // Counts the bytes read from in, if this pipeline has stats
+    private ReadableByteChannel countInput(ReadableByteChannel in) {
+        return this.stats == null ? in : this.stats.countInput(in);
+    }
+
+    // emit() for a pipeline with stats
+    private void emitCounted(long lineNumber, LineBuffer line,
+                             String terminator, Writer out)
+            throws IOException {
+        this.stats.linesRead.increment();
+        if (!apply(lineNumber, line)) {
+            this.stats.linesSkipped.increment();
+            return;
+        }
+
+        // Case: not timed. Write without reading the clock
+        if (!this.timed) {
+            out.write(this.prefix);
+            out.write(line.chars, line.start, line.length());
+            out.write(terminator);
+            this.stats.linesWritten.increment();
+            return;
+        }
+
+        long start = System.nanoTime();
+        long prefixed = start;
+        if (!this.prefix.isEmpty()) {
+            out.write(this.prefix);
+            prefixed = System.nanoTime();
+        }
+        out.write(line.chars, line.start, line.length());
+        out.write(terminator);
+        long end = System.nanoTime();
+
+        this.stats.stageNanos[RunStats.PREFIX].add(prefixed - start);
+        this.stats.stageNanos[RunStats.WRITE].add(end - prefixed);
+        this.stats.linesWritten.increment();
+    }
+
+    // Streams input that cannot be mapped
+    private void runStream(ReadableByteChannel in, Charset charset, Writer out)
+            throws IOException {
+        // Case: charset cannot be scanned as bytes. Checked at EOF
+        if (!MappedInput.supports(charset)) {
+            runReader(Channels.newReader(in, charset), out);
+            return;
+        }
+        StreamInput.run(in, charset, this, out);
+    }
+
+    // Fallback for charsets that cannot be scanned as raw bytes. Scans the
+    // decoded chars for "\n" and "\r\n" instead
+    private void runReader(Reader in, Writer out) throws IOException {
+        LineBuffer buffer = new LineBuffer(256);
+        StringBuilder line = new StringBuilder();
+        char[] chars = new char[8 << 10];
+        long lineNum = 1;
+
+        int read;
+        while ((read = in.read(chars)) >= 0) {
+            for (int i = 0; i < read; i++) {
+                if (chars[i] != '\n') {
+                    line.append(chars[i]);
+                    continue;
+                }
+
+                // Case: "\r\n". The "\r" is part of the terminator
+                int length = line.length();
+                boolean crlf = length > 0 && line.charAt(length - 1) == '\r';
+                buffer.set(line.substring(0, crlf ? length - 1 : length));
+                emit(lineNum, buffer, crlf ? "\r\n" : "\n", out);
+                line.setLength(0);
+                lineNum++;
+            }
+            progress();
+        }
+
+        if (line.length() > 0) {
+            throw new IllegalArgumentException("File does not end with newline");
+        }
+    }
+
+    /**
+     * Builds the stage that removes leading, trailing, or all white spaces
+     *
+     * @param removeSpaces which whitespace to remove
+     * @return compiled -w stage
+     */
+    private static Stage spacingStage(RemoveSpaces removeSpaces) {
+        switch (removeSpaces) {
+            case leading:
+                return (lineNumber, line) -> {
+                    LineKernels.stripLeading(line);
+                    return true;
+                };
+            case trailing:
+                return (lineNumber, line) -> {
+                    LineKernels.stripTrailing(line);
+                    return true;
+                };
+            default:
+                return (lineNumber, line) -> {
+                    LineKernels.removeAll(line);
+                    return true;
+                };
+        }
+    }
+
+    /**
+     * Builds the stage that reverses either the whole text or the word order
+     * of a line
+     *
+     * @param reverseLine how to reverse a line
+     * @return compiled -r stage
+     */
+    private static Stage reversalStage(ReverseLine reverseLine) {
+        // Handle reversing text
+        if (reverseLine == ReverseLine.text) {
+            return (lineNumber, line) -> {
+                LineKernels.reverseText(line);
+                return true;
+            };
+        }
+
+        // Handle reversing word order. Preserve original whitespaces.
+        return (lineNumber, line) -> {
+            LineKernels.reverseWords(line);
+            return true;
+        };
+    }
+}
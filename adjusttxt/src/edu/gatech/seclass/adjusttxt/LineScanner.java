@@ -0,0 +1,101 @@
+package edu.gatech.seclass.adjusttxt;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Scans raw input bytes for line ends and runs each line through a
+ * LinePipeline. A line ends at "\n" or "\r\n", found in one pass over the
+ * bytes with ByteKernels, and its terminator is written back out unchanged, so files with
+ * mixed line endings keep them. A lone "\r" is part of the line. Used by
+ * every input engine, which only differ in how they get the bytes (mapped
+ * windows, chunks, or a stream).
+ *
+ * <p>Keeps the current line number between calls, so the input can be fed
+ * in any number of pieces. Not thread-safe: one LineScanner is used per
+ * thread and run.
+ */
+final class LineScanner {
+    private static final byte LF = '\n';
+    private static final byte CR = '\r';
+
+    private static final String LF_TERMINATOR = "\n";
+    private static final String CRLF_TERMINATOR = "\r\n";
+
+    private final LinePipeline pipeline;
+    private final Writer out;
+    private final LineDecoder decoder;
+    private final LineBuffer line = new LineBuffer(256);
+    private long lineNum;
+
+    /**
+     * @param pipeline compiled options
+     * @param charset charset of the input. Must be supported by MappedInput
+     * @param firstLine line number of the first line fed to the scanner
+     * @param out sink for the adjusted lines
+     */
+    LineScanner(LinePipeline pipeline, Charset charset, long firstLine,
+                Writer out) {
+        this.pipeline = pipeline;
+        this.out = out;
+        this.decoder = new LineDecoder(charset);
+        this.lineNum = firstLine;
+    }
+
+    /**
+     * Processes every complete line in bytes [0, limit). Positions are
+     * absolute, and the position and limit of bytes are left untouched.
+     *
+     * @param bytes input bytes, starting at the beginning of a line
+     * @param limit number of valid bytes
+     * @param endOfInput True if no bytes follow. A last line without a
+     *                   terminator is then processed as well, and written
+     *                   without one
+     * @return number of bytes consumed. Bytes after that belong to a line
+     *         that continues in the next piece of input
+     * @throws IOException if writing to out fails
+     */
+    int scan(ByteBuffer bytes, int limit, boolean endOfInput)
+            throws IOException {
+        ByteBuffer lineBytes = bytes.duplicate();
+
+        int start = 0;
+        int i;
+        while ((i = ByteKernels.indexOf(bytes, start, limit, LF)) >= 0) {
+            // Case: "\r\n". The "\r" is part of the terminator
+            if (i > start && bytes.get(i - 1) == CR) {
+                emit(lineBytes, start, i - 1, CRLF_TERMINATOR);
+            } else {
+                emit(lineBytes, start, i, LF_TERMINATOR);
+            }
+            start = i + 1;
+        }
+
+        // Case: last line of the input has no terminator
+        if (endOfInput && start < limit) {
+            emit(lineBytes, start, limit, "");
+            start = limit;
+        }
+
+        this.pipeline.progress();
+        return start;
+    }
+
+    /**
+     * @return line number of the next line to be processed
+     */
+    long lineNumber() {
+        return this.lineNum;
+    }
+
+    // Decodes bytes [start, end) as one line and runs it through the pipeline
+    private void emit(ByteBuffer lineBytes, int start, int end,
+                      String terminator) throws IOException {
+        lineBytes.limit(end).position(start);
+        this.decoder.decode(lineBytes, this.line);
+        this.pipeline.emit(this.lineNum, this.line, terminator, this.out);
+        this.lineNum++;
+    }
+}
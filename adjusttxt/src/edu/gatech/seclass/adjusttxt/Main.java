@@ -1,182 +1,205 @@
 package edu.gatech.seclass.adjusttxt;
 
+import edu.gatech.seclass.adjusttxt.AdjustTxtInterface.LineToSkip;
+import edu.gatech.seclass.adjusttxt.AdjustTxtInterface.RemoveSpaces;
+import edu.gatech.seclass.adjusttxt.AdjustTxtInterface.ReverseLine;
+
 import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 
 public class Main {
     // Empty Main class for compiling Individual Project
     // During Deliverable 1 and Deliverable 2, DO NOT ALTER THIS CLASS or implement it
-    private static Integer skip;
-    private static String spacing;
-    private static boolean removeEmptyLines = false;
-    private static String reverseLine;
-    private static String prefix = "";
-    private static File file;
 
     public static void main(String[] args) {
-        ParseArgs parseArgs;
-        String output;
-        HashMap<String, Object> options;
-
         try {
-            parseArgs = new ParseArgs(args);
-            options = parseArgs.getOptions();
+            // Case: --daemon SOCKET. Serve runs until the JVM is stopped
+            if (args.length == 2 && args[0].equals("--daemon")) {
+                try (Daemon daemon = Daemon.bind(Path.of(args[1]))) {
+                    daemon.serve();
+                }
+                return;
+            }
 
-            // Set all options
-            skip = (Integer) options.getOrDefault("skip", null);
-            spacing = (String) options.getOrDefault("spacing", null);
-            removeEmptyLines = (Boolean) options.getOrDefault(
-                    "removeEmptyLines", false);
-            reverseLine = (String) options.getOrDefault("reverseLine", null);
-            prefix = (String) options.getOrDefault("prefix", "");
-            file = (File) options.get("file");
-
-            // Generate output and print to stdout
-            output = generateOutput();
-            System.out.print(output);
+            // Case: --client SOCKET ARGS. Forward the run to a daemon, or
+            // run it here if none is listening
+            if (args.length >= 2 && args[0].equals("--client")) {
+                String[] forwarded = Arrays.copyOfRange(args, 2, args.length);
+                if (!Daemon.forward(Path.of(args[1]), forwarded,
+                        System.out, System.err)) {
+                    run(forwarded, null, System.out, System.err);
+                }
+                return;
+            }
         } catch (Exception e) {
-//            System.out.println(e.toString());
-            usage();
+            usage(System.err);
+            return;
         }
-    }
 
-    // If tests fail, convert back to private and copy into ParseArgs
-    private static void usage() {
-        System.err.println(
-                "Usage: adjusttxt [ -s number | -w spacing | -x | -r target | -p prefix ] FILE");
+        run(args, null, System.out, System.err);
     }
 
     /**
-     * Processes input file to generate output String
+     * Runs one command line. Nothing global is touched besides stdin, so a
+     * daemon can run several at once
      *
-     * @return String to be outputted to console
-     * @throws IllegalArgumentException when file doesn't end in newline
+     * @param args command line arguments
+     * @param workingDir directory relative paths are resolved against. Null
+     *                   for the current directory
+     * @param stdout stream the adjusted text is written to
+     * @param stderr stream errors, per-file failures and --stats go to
      */
-    private static String generateOutput() {
-        StringBuilder out = new StringBuilder();
-
-        // Parse through all lines. Update in order -s -> -w / -x -> -r -> -p
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            int lineNum = 1;
-            while ((line = reader.readLine()) != null) {
-                // Handle -s and -x options
-                if (skipLine(lineNum, line)) {
-                    lineNum++;
-                    continue;
-                }
-
-                // Handle -w option
-                String processedLine = processSpacing(line);
-
-                // Handle -r option
-                processedLine = processReversal(processedLine);
+    static void run(String[] args, File workingDir, PrintStream stdout,
+                    PrintStream stderr) {
+        ParseArgs parseArgs;
+        Writer out;
+        HashMap<String, Object> options;
 
-                // Handle -p option (add prefix)
-                processedLine = prefix + processedLine;
+        try {
+            parseArgs = new ParseArgs(args, workingDir);
+            options = parseArgs.getOptions();
 
-                // Add line to output
-                out.append(processedLine).append(System.lineSeparator());
-                lineNum++;
+            // Compile all options into a single pipeline. --stats times it
+            RunStats stats = (Boolean) options.get("stats")
+                    ? new RunStats()
+                    : null;
+            LinePipeline compiled = compilePipeline(options);
+            LinePipeline pipeline = stats == null
+                    ? compiled
+                    : compiled.withStats(stats);
+            @SuppressWarnings("unchecked")
+            List<File> files = (List<File>) options.get("files");
+            Integer parallelism = (Integer) options.getOrDefault("parallelism", null);
+
+            // Batches default to one worker per processor
+            int workers = parallelism == null
+                    ? Runtime.getRuntime().availableProcessors()
+                    : parallelism;
+
+            if (options.containsKey("outputDir")) {
+                // Case: -d. Walk the directory into a mirrored output tree
+                DirectoryBatch.run(files.get(0), (File) options.get("outputDir"),
+                        pipeline, workers, stderr);
+            } else if ((Boolean) options.get("inPlace")) {
+                // Case: --in-place. Atomically replace each file in turn
+                for (File file : files) {
+                    try {
+                        long written = AtomicOutput.write(file.toPath(),
+                                fileOut -> pipeline.run(file,
+                                        parallelism == null ? 1 : parallelism,
+                                        fileOut));
+                        if (stats != null) {
+                            stats.bytesOut.add(written);
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        // Case: several files. Report this one, as for a
+                        // FileBatch, and go on with the rest
+                        if (files.size() == 1) {
+                            throw e;
+                        }
+                        FileBatch.report(stderr, file, e);
+                    }
+                }
+            } else if (options.containsKey("outputFile")) {
+                // Case: -o. Atomically replace the output file
+                File outputFile = (File) options.get("outputFile");
+                long written = AtomicOutput.write(outputFile.toPath(),
+                        fileOut -> adjust(files, pipeline, parallelism, workers,
+                                fileOut, stderr));
+                if (stats != null) {
+                    stats.bytesOut.add(written);
+                }
+            } else {
+                // Stream output to stdout line by line. Lines before an
+                // error (e.g. stdin without a trailing newline) are kept,
+                // and the run stops once nobody reads stdout
+                OutputStream checked = new StdoutOutput(stdout);
+                out = new BufferedWriter(new OutputStreamWriter(stats == null
+                        ? checked
+                        : stats.countOutput(checked)));
+                try {
+                    adjust(files, pipeline, parallelism, workers, out,
+                            stderr);
+                } finally {
+                    out.flush();
+                }
             }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-
-        return out.toString();
-    }
-
-    /**
-     * Choose whether to skip a line based on skip value
-     *
-     * @param lineNumber current line number in file
-     * @param line current line
-     * @return True to skip line, False to process it
-     */
-    private static Boolean skipLine(int lineNumber, String line) {
-        boolean skipLine = false;
 
-        // Case: skip = 0 or 1. Skip line if even or odd respectively
-        if (skip != null) {
-            skipLine = (lineNumber % 2) == skip;
-        }
-
-        // Case: -x toggled. Skip empty lines
-        if (removeEmptyLines && isEmptyLine(line)) {
-            skipLine = true;
+            if (stats != null) {
+                stats.print(stderr);
+            }
+        } catch (StdoutOutput.Closed e) {
+            // Case: reader of stdout gone, e.g. piped into head. Not an error
+        } catch (Exception e) {
+//            System.out.println(e.toString());
+            usage(stderr);
         }
-
-        return skipLine;
     }
 
-    // Checks if current line is empty
-    private static Boolean isEmptyLine(String line) {
-        return line.trim().isEmpty();
+    // If tests fail, convert back to private and copy into ParseArgs
+    static void usage(PrintStream stderr) {
+        stderr.println(
+                "Usage: adjusttxt [ --client socket ] [ -s number | -w spacing | -x | -r target | -p prefix | -j threads | -d outdir | -o file | --in-place | --charset name | --stats ] FILE...");
+        stderr.println("       adjusttxt --daemon socket");
     }
 
     /**
-     * Removes leading, trailing, or all white spaces depending on this.spacing
-     * @param line line in the file being processed
-     * @return processed line
+     * Adjusts the FILE arguments into out. Several files are adjusted
+     * concurrently and written in argument order
+     *
+     * @param files FILE arguments
+     * @param pipeline compiled options
+     * @param parallelism -j option. Null if not toggled
+     * @param workers number of worker threads for several files
+     * @param out sink for the adjusted lines
+     * @param stderr stream per-file errors are reported on
+     * @throws IOException if reading a file or writing to out fails
      */
-    private static String processSpacing(String line) {
-        String processedLine = line;
-
-        // Case: -w option not toggled
-        if (spacing == null) {
-            return processedLine;
-        }
-
-        // Remove whitespaces based on spacing argument and return updated line
-        if (spacing.equals("leading")){
-            processedLine = line.replaceAll("^\\s+", "");
+    private static void adjust(List<File> files, LinePipeline pipeline,
+                               Integer parallelism, int workers, Writer out,
+                               PrintStream stderr)
+            throws IOException {
+        if (files.size() == 1) {
+            pipeline.run(files.get(0), parallelism == null ? 1 : parallelism, out);
+        } else {
+            // Case: several files. Adjust them concurrently, output in order
+            FileBatch.run(files, pipeline, workers,
+                    parallelism == null ? 1 : parallelism, out, stderr);
         }
-        if (spacing.equals("trailing")) {
-            processedLine = line.replaceAll("\\s+$", "");
-        }
-        if (spacing.equals("all")) {
-            processedLine = line.replaceAll("\\s+", "");
-        }
-
-        return processedLine;
     }
 
     /**
-     * Reverses line based on "text" and "words" options stored in
-     * this.reverseLine
-     * @param line line in the file being processed
-     * @return processed line
+     * Maps the options parsed from the command line onto the
+     * AdjustTxtInterface enums and compiles them into a LinePipeline
+     *
+     * @param options options returned by ParseArgs.getOptions()
+     * @return compiled pipeline
      */
-    private static String processReversal(String line) {
-        String processedLine = line;
-        StringBuilder reversedLine;
-
-        // Case: -r option not toggled
-        if (reverseLine == null) {
-            return processedLine;
-        }
-
-        // Handle reversing text
-        if (reverseLine.equals("text")){
-            reversedLine = new StringBuilder(line);
-            processedLine = reversedLine.reverse().toString();
-        }
-
-        // Handle reversing word order. Preserve original whitespaces.
-        if (reverseLine.equals("words")) {
-            // Get all words in String array. Reverse them and store as String
-            reversedLine = new StringBuilder();
-
-            // (?<=\\s)|(?=\\s) is a regex string that allows for inclusion of
-            // all whitespaces in the String array
-            String[] words = line.split("(?<=\\s)|(?=\\s)");
-
-            for (int i = words.length - 1; i >= 0; i--) {
-                reversedLine.append(words[i]);
-            }
-            processedLine = reversedLine.toString();
+    private static LinePipeline compilePipeline(HashMap<String, Object> options) {
+        Integer skip = (Integer) options.getOrDefault("skip", null);
+        String spacing = (String) options.getOrDefault("spacing", null);
+        boolean removeEmptyLines = (Boolean) options.getOrDefault(
+                "removeEmptyLines", false);
+        String reverseLine = (String) options.getOrDefault("reverseLine", null);
+        String prefix = (String) options.getOrDefault("prefix", null);
+        Charset charset = (Charset) options.getOrDefault("charset", null);
+
+        // Case: skip = 0 or 1. Skip even or odd lines respectively
+        LineToSkip lineToSkip = null;
+        if (skip != null) {
+            lineToSkip = skip == 1 ? LineToSkip.odd : LineToSkip.even;
         }
 
-        return processedLine;
+        return LinePipeline.compile(
+                lineToSkip,
+                spacing == null ? null : RemoveSpaces.valueOf(spacing),
+                removeEmptyLines,
+                reverseLine == null ? null : ReverseLine.valueOf(reverseLine),
+                prefix,
+                charset);
     }
 }
@@ -0,0 +1,176 @@
+package edu.gatech.seclass.adjusttxt;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Reads an input file through memory-mapped windows and feeds its lines to a
+ * LinePipeline. Line boundaries are found directly in the mapped bytes, so
+ * the file is never copied through a read buffer. Windows are remapped as
+ * the file is consumed, which lifts the 2 GB limit of a single
+ * MappedByteBuffer.
+ */
+final class MappedInput {
+    // Size of each mapped window. Grown (up to 2 GB) for longer lines
+    static final long WINDOW_SIZE = 64L << 20;
+
+    private static final byte LF = '\n';
+    private static final byte CR = '\r';
+    private static final byte[] ASCII_SAMPLE = {CR, LF, ' ', 'a'};
+
+    private MappedInput() {
+    }
+
+    /**
+     * Checks whether lines can be split directly on the encoded bytes, which
+     * holds for every charset that encodes ASCII as single bytes (UTF-8,
+     * ISO-8859-1, ...)
+     *
+     * @param charset charset of the input file
+     * @return True if charset can be read by MappedInput
+     */
+    static boolean supports(Charset charset) {
+        return charset.canEncode()
+                && Arrays.equals(ASCII_SAMPLE, "\r\n a".getBytes(charset));
+    }
+
+    /**
+     * Checks that the file ends with "\n" (which covers "\r\n" as well),
+     * using a positional read on the already open channel. The byte read is
+     * on the last page of the file, which the mapping reads anyway.
+     *
+     * @param channel open input file
+     * @param size size of the file
+     * @throws IllegalArgumentException if a non-empty file does not end with
+     *                                  "\n"
+     * @throws IOException if reading the file fails
+     */
+    static void checkEndsWithNewline(FileChannel channel, long size)
+            throws IOException {
+        // Case: empty file. Nothing to check
+        if (size == 0) {
+            return;
+        }
+
+        ByteBuffer lastByte = ByteBuffer.allocate(1);
+        while (lastByte.hasRemaining()) {
+            if (channel.read(lastByte, size - 1) < 0) {
+                break;
+            }
+        }
+
+        if (lastByte.hasRemaining() || lastByte.get(0) != LF) {
+            throw new IllegalArgumentException("File does not end with newline");
+        }
+    }
+
+    /**
+     * Maps the byte range [from, to) of channel window by window and runs
+     * each line in it through the pipeline. The range has to start at the
+     * beginning of a line.
+     *
+     * @param channel open input file
+     * @param from first byte of the range
+     * @param to end of the range (exclusive)
+     * @param firstLine line number of the first line in the range
+     * @param charset charset of the input file. Must be supported
+     * @param pipeline compiled options
+     * @param out sink for the adjusted lines
+     * @return line number following the last line in the range
+     * @throws IOException if mapping the file or writing to out fails
+     */
+    static long run(FileChannel channel, long from, long to, long firstLine,
+                   Charset charset, LinePipeline pipeline, Writer out)
+            throws IOException {
+        long position = from;
+        long windowSize = WINDOW_SIZE;
+        LineScanner scanner = new LineScanner(pipeline, charset, firstLine,
+                out);
+
+        while (position < to) {
+            int limit = (int) Math.min(windowSize, to - position);
+            boolean lastWindow = position + limit == to;
+            MappedByteBuffer window = channel.map(
+                    FileChannel.MapMode.READ_ONLY, position, limit);
+            int consumed = scanner.scan(window, limit, lastWindow);
+
+            // Case: no complete line in this window. Map a larger one
+            if (consumed == 0 && !lastWindow) {
+                if (windowSize >= Integer.MAX_VALUE) {
+                    throw new IOException("Line exceeds 2 GB at byte "
+                            + position);
+                }
+                windowSize = Math.min(windowSize * 2, Integer.MAX_VALUE);
+                continue;
+            }
+
+            position += consumed;
+            windowSize = WINDOW_SIZE;
+        }
+
+        return scanner.lineNumber();
+    }
+
+    /**
+     * Counts the line terminators ("\n" or "\r\n") in the byte range
+     * [from, to) of channel, which is the number of "\n"
+     *
+     * @param channel open input file
+     * @param from first byte of the range
+     * @param to end of the range (exclusive)
+     * @return number of line terminators in the range
+     * @throws IOException if mapping the file fails
+     */
+    static long countLines(FileChannel channel, long from, long to)
+            throws IOException {
+        long count = 0;
+
+        for (long position = from; position < to; position += WINDOW_SIZE) {
+            int limit = (int) Math.min(WINDOW_SIZE, to - position);
+            MappedByteBuffer window = channel.map(
+                    FileChannel.MapMode.READ_ONLY, position, limit);
+
+            count += ByteKernels.count(window, 0, limit, LF);
+        }
+
+        return count;
+    }
+
+    /**
+     * Finds the start of the first line beginning at or after position,
+     * which is just past the next "\n". Uses
+     * positional reads rather than a mapping, as only a few bytes are
+     * usually needed.
+     *
+     * @param channel open input file
+     * @param position byte to start searching from
+     * @param size size of the file
+     * @return offset just past the next "\n", or size if there is none
+     * @throws IOException if reading the file fails
+     */
+    static long nextLineStart(FileChannel channel, long position, long size)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8 << 10);
+
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+
+            int found = ByteKernels.indexOf(buffer, 0, read, LF);
+            if (found >= 0) {
+                return position + found + 1;
+            }
+            position += read;
+        }
+
+        return size;
+    }
+}
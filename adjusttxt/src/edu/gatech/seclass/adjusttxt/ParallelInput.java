@@ -0,0 +1,193 @@
+package edu.gatech.seclass.adjusttxt;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Processes a memory-mapped input file in parallel. The file is split into
+ * chunks that each start right after a "\n", and chunks are processed on a
+ * ForkJoinPool. Their output is written back in input order, so the result
+ * is identical to the sequential MappedInput.
+ *
+ * <p>The line number each chunk starts at (needed by -s) is taken from a
+ * prefix sum of the per-chunk line counts, which are counted in parallel
+ * beforehand. Chunks are CHUNK_SIZE bytes whatever the file size, and at most
+ * 2 * parallelism of them are buffered at a time, so memory depends on
+ * parallelism but not on file size. A chunk only grows past CHUNK_SIZE to
+ * finish the line it ends in.
+ */
+final class ParallelInput {
+    // Target size of a chunk. Actual chunks end at the next "\n". Each chunk
+    // in flight is buffered whole, so this is not scaled with the file size
+    static final long CHUNK_SIZE = 8L << 20;
+
+    private ParallelInput() {
+    }
+
+    /**
+     * Processes the open input file on parallelism worker threads, writing
+     * the adjusted lines to out in input order
+     *
+     * @param channel open input file
+     * @param size size of the file
+     * @param charset charset of the input file. Must be supported by
+     *                MappedInput
+     * @param pipeline compiled options
+     * @param parallelism number of worker threads
+     * @param out sink for the adjusted lines. Flushing is left to the caller
+     * @throws IOException if reading the file or writing to out fails
+     */
+    static void run(FileChannel channel, long size, Charset charset,
+                    LinePipeline pipeline, int parallelism, Writer out)
+            throws IOException {
+        run(channel, size, charset, pipeline, parallelism, out, CHUNK_SIZE);
+    }
+
+    /**
+     * {@link #run(FileChannel, long, Charset, LinePipeline, int, Writer)}
+     * with chunks of about chunkSize bytes, so that tests can split small
+     * files into several chunks
+     *
+     * @param chunkSize target size of a chunk. At least 1
+     */
+    static void run(FileChannel channel, long size, Charset charset,
+                    LinePipeline pipeline, int parallelism, Writer out,
+                    long chunkSize) throws IOException {
+        long[] bounds = split(channel, size, chunkSize);
+        int chunks = bounds.length - 1;
+
+        // Case: nothing to split. Process sequentially
+        if (chunks < 2 || parallelism < 2) {
+            pipeline.measure(() -> MappedInput.run(channel, 0, size, 1,
+                    charset, pipeline, out));
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            long[] firstLines = pipeline.usesLineNumbers()
+                    ? firstLines(pool, channel, bounds, pipeline)
+                    : new long[chunks];
+            processChunks(pool, channel, bounds, firstLines, charset,
+                    pipeline, parallelism, out);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Splits the file into chunks of about chunkSize bytes, each starting at
+     * the beginning of a line
+     *
+     * @return chunk boundaries. Chunk i is [bounds[i], bounds[i + 1])
+     */
+    static long[] split(FileChannel channel, long size,
+                                long chunkSize) throws IOException {
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+
+        long position = 0;
+        while (position < size) {
+            position = MappedInput.nextLineStart(channel,
+                    Math.min(position + chunkSize, size) - 1, size);
+            bounds.add(position);
+        }
+
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Counts the lines of every chunk in parallel and turns the counts into
+     * the line number each chunk starts at
+     *
+     * @return line number of the first line in each chunk
+     */
+    private static long[] firstLines(ForkJoinPool pool, FileChannel channel,
+                                     long[] bounds, LinePipeline pipeline) {
+        int chunks = bounds.length - 1;
+        List<ForkJoinTask<Long>> counts = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            long from = bounds[i];
+            long to = bounds[i + 1];
+            counts.add(pool.submit(() -> {
+                long[] count = new long[1];
+                try {
+                    pipeline.measure(() -> count[0] =
+                            MappedInput.countLines(channel, from, to));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return count[0];
+            }));
+        }
+
+        // Prefix sum. Lines are numbered from 1
+        long[] firstLines = new long[chunks];
+        long lineNum = 1;
+        for (int i = 0; i < chunks; i++) {
+            firstLines[i] = lineNum;
+            lineNum += counts.get(i).join();
+        }
+
+        return firstLines;
+    }
+
+    /**
+     * Processes the chunks on the pool, keeping at most 2 * parallelism
+     * chunks in flight, and writes their output to out in input order
+     */
+    private static void processChunks(ForkJoinPool pool, FileChannel channel,
+                                      long[] bounds, long[] firstLines,
+                                      Charset charset, LinePipeline pipeline,
+                                      int parallelism, Writer out)
+            throws IOException {
+        int chunks = bounds.length - 1;
+        int maxInFlight = 2 * parallelism;
+        Deque<ForkJoinTask<CharArrayWriter>> inFlight = new ArrayDeque<>();
+
+        int next = 0;
+        while (next < chunks || !inFlight.isEmpty()) {
+            // Keep the pool busy
+            while (next < chunks && inFlight.size() < maxInFlight) {
+                long from = bounds[next];
+                long to = bounds[next + 1];
+                long firstLine = firstLines[next];
+                inFlight.add(pool.submit(() -> {
+                    CharArrayWriter chunkOut = new CharArrayWriter();
+                    JfrEvents.Chunk event = new JfrEvents.Chunk();
+                    event.begin();
+                    try {
+                        pipeline.measure(() -> MappedInput.run(channel, from,
+                                to, firstLine, charset, pipeline, chunkOut));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    event.end();
+                    if (event.shouldCommit()) {
+                        event.offset = from;
+                        event.bytes = to - from;
+                        event.firstLine = firstLine;
+                        event.commit();
+                    }
+                    return chunkOut;
+                }));
+                next++;
+            }
+
+            // Write the oldest chunk once it is done
+            inFlight.poll().join().writeTo(out);
+        }
+    }
+}
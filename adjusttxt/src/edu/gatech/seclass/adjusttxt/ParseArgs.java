@@ -1,11 +1,12 @@
 package edu.gatech.seclass.adjusttxt;
 
 import java.io.File;
-import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 public class ParseArgs {
@@ -14,7 +15,14 @@ public class ParseArgs {
     private Boolean removeEmptyLines = false;
     private String reverseLine = null;
     private String prefix = null;
-    private File file = null;
+    private Integer parallelism = null;
+    private File outputDir = null;
+    private File outputFile = null;
+    private Boolean inPlace = false;
+    private Charset charset = null;
+    private Boolean stats = false;
+    private final List<File> files = new ArrayList<>();
+    private final File workingDir;
 
     private final Set<String> legalSpacingArgs = new HashSet<>(
             Arrays.asList("leading", "trailing", "all")
@@ -25,11 +33,31 @@ public class ParseArgs {
     );
 
     public ParseArgs(String[] args) {
-        for (int i = 0; i < args.length; i++) {
+        this(args, null);
+    }
+
+    /**
+     * Parses args as if run from workingDir, for a daemon serving a client
+     * started in another directory
+     *
+     * @param args command line arguments
+     * @param workingDir directory relative paths are resolved against. Null
+     *                   for the current directory
+     */
+    ParseArgs(String[] args, File workingDir) {
+        this.workingDir = workingDir;
+
+        int i = 0;
+        for (; i < args.length; i++) {
             try {
-                // Case: last arg should be the file
+                // Case: last arg should be a file
                 if (i == args.length - 1) {
-                    setFile(args[i]);
+                    break;
+                }
+
+                // Case: first arg that is not an option starts the FILE list
+                if (!args[i].startsWith("-")
+                        || args[i].equals(LinePipeline.STDIN)) {
                     break;
                 }
 
@@ -54,6 +82,28 @@ public class ParseArgs {
                         setOptionP(args[i + 1]);
                         i++;
                         break;
+                    case "-j":
+                        setOptionJ(args[i + 1]);
+                        i++;
+                        break;
+                    case "-d":
+                        setOptionD(args[i + 1]);
+                        i++;
+                        break;
+                    case "-o":
+                        setOptionO(args[i + 1]);
+                        i++;
+                        break;
+                    case "--in-place":
+                        setOptionInPlace();
+                        break;
+                    case "--charset":
+                        setOptionCharset(args[i + 1]);
+                        i++;
+                        break;
+                    case "--stats":
+                        setOptionStats();
+                        break;
                     default:
                         // Invalid option
                         throw new IllegalArgumentException(
@@ -64,9 +114,31 @@ public class ParseArgs {
             }
         }
 
-        if (this.file == null) {
+        // Remaining args are all files
+        for (; i < args.length; i++) {
+            addFile(args[i]);
+        }
+
+        if (this.files.isEmpty()) {
             throw new IllegalArgumentException("Last argument was not a file");
         }
+
+        // Case: -d walks exactly one input directory
+        if (this.outputDir != null
+                && (this.files.size() != 1 || !this.files.get(0).isDirectory())) {
+            throw new IllegalArgumentException(
+                    "-d requires a single directory as FILE");
+        }
+
+        // Case: --in-place can only rewrite regular files
+        if (this.inPlace) {
+            for (File file : this.files) {
+                if (!file.isFile()) {
+                    throw new IllegalArgumentException(
+                            "Cannot adjust in place: " + file);
+                }
+            }
+        }
     }
 
     /**
@@ -174,47 +246,170 @@ public class ParseArgs {
         this.prefix = arg;
     }
 
+    /**
+     * Validates argument after -j option. Updates this.parallelism.
+     * Description:
+     *  Processes the file on the given number of worker threads. The output
+     *  is identical to processing it on a single thread.
+     *
+     * @param arg argument passed into console after -j option
+     */
+    private void setOptionJ(String arg) {
+        int argAsInt;
+
+        try {
+            argAsInt = Integer.parseInt(arg);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(arg + " is not an Integer.");
+        }
+
+        if (argAsInt < 1) {
+            throw new IllegalArgumentException("Invalid thread count: " + arg);
+        }
+        this.parallelism = argAsInt;
+    }
 
     /**
-     * Validates that the last argument is a file. Sets this.file to new file.
-     * 
-     * @param arg argument passed into console after -p option
-     *            
-     * @throws IllegalArgumentException if file invalid
+     * Validates argument after -d option. Updates this.outputDir.
+     * Description:
+     *  Walks the directory given as FILE and writes each adjusted file to the
+     *  same relative path under the output directory, which is created if
+     *  missing.
+     *
+     * @param arg argument passed into console after -d option
      */
-    private void setFile(String arg) {
-        File file = new File(arg);
+    private void setOptionD(String arg) {
+        File dir = resolve(arg);
 
-        if (!file.exists() || !file.isFile() || this.file != null) {
-            throw new IllegalArgumentException("Invalid file: " + file);
+        // Case: -o or --in-place toggled already
+        if (this.outputFile != null || this.inPlace) {
+            throw new IllegalArgumentException(
+                    "Cannot toggle -d with -o or --in-place");
         }
 
-        // Check that the file ends in a new line
-        try (RandomAccessFile checkFile = new RandomAccessFile(file, "r")) {
-            // Get file size. If empty, can move on
-            long numLines = checkFile.length();
+        if (arg.isEmpty() || (dir.exists() && !dir.isDirectory())) {
+            throw new IllegalArgumentException("Invalid output directory: " + arg);
+        }
+        this.outputDir = dir;
+    }
 
-            if (numLines > 0) {
-                // Compare to system's lineSeparator by checking last
-                // length(lineSeparator) bytes and comparing to those in file
-                byte[] lineSeparator = System.lineSeparator().getBytes();
-                int lineSeparatorLength = lineSeparator.length;
-                checkFile.seek(numLines - lineSeparatorLength);
+    /**
+     * Validates argument after -o option. Updates this.outputFile.
+     * Description:
+     *  Writes the output to the given file instead of stdout. The file is
+     *  written in full next to the target and then atomically renamed into
+     *  place, so it is never left half-written.
+     *
+     * @param arg argument passed into console after -o option
+     */
+    private void setOptionO(String arg) {
+        File file = resolve(arg);
 
-                byte[] endingBytes = new byte[lineSeparatorLength];
-                checkFile.readFully(endingBytes);
+        // Case: -d or --in-place toggled already
+        if (this.outputDir != null || this.inPlace) {
+            throw new IllegalArgumentException(
+                    "Cannot toggle -o with -d or --in-place");
+        }
 
-                // Throw error if last length(lineSeparator) bytes do not match
-                // lineSeparator
-                if (!Arrays.equals(lineSeparator, endingBytes)) {
-                    throw new IllegalArgumentException("File does not end with newline");
-                }
+        if (arg.isEmpty() || file.isDirectory()) {
+            throw new IllegalArgumentException("Invalid output file: " + arg);
+        }
+        this.outputFile = file;
+    }
+
+    /**
+     * Sets inPlace to true if option --in-place is toggled. Description:
+     *  Replaces each input file with its adjusted text instead of writing
+     *  it to stdout. Each file is replaced atomically once it has been
+     *  written in full.
+     */
+    private void setOptionInPlace() {
+        // Case: -d or -o toggled already
+        if (this.outputDir != null || this.outputFile != null) {
+            throw new IllegalArgumentException(
+                    "Cannot toggle --in-place with -d or -o");
+        }
+
+        this.inPlace = true;
+    }
+
+    /**
+     * Validates argument after --charset option. Updates this.charset.
+     * Description:
+     *  Decodes the input files with the given charset instead of the
+     *  platform default.
+     *
+     * @param arg argument passed into console after --charset option
+     */
+    private void setOptionCharset(String arg) {
+        try {
+            this.charset = Charset.forName(arg);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid charset: " + arg);
+        }
+    }
+
+    /**
+     * Sets stats to true if option --stats is toggled. Description:
+     *  Prints a summary of the run to stderr once it is done: lines read,
+     *  skipped and written, bytes in and out, wall and CPU time, allocated
+     *  bytes, MB/s and the time spent in each stage.
+     */
+    private void setOptionStats() {
+        this.stats = true;
+    }
+
+    /**
+     * Validates that a FILE argument is a file and adds it to this.files.
+     * The file is not opened here: the trailing newline is checked while it
+     * is read, so it is only opened once. "-" reads stdin (at most once), and
+     * named pipes are accepted too.
+     *
+     * @param arg FILE argument passed into console after the options
+     *
+     * @throws IllegalArgumentException if file invalid
+     */
+    private void addFile(String arg) {
+        File file = arg.equals(LinePipeline.STDIN)
+                ? new File(arg)
+                : resolve(arg);
+
+        // Case: "-" reads stdin, which can only be read once
+        if (arg.equals(LinePipeline.STDIN)) {
+            if (this.files.contains(file)) {
+                throw new IllegalArgumentException(
+                        "Stdin given more than once");
             }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+            this.files.add(file);
+            return;
+        }
+
+        // Case: -d toggled. FILE is the directory to walk
+        if (this.outputDir != null && file.isDirectory()) {
+            this.files.add(file);
+            return;
         }
 
-        this.file = file;
+        // Named pipes are accepted as well as regular files
+        if (!file.exists() || file.isDirectory()) {
+            throw new IllegalArgumentException("Invalid file: " + file);
+        }
+
+        this.files.add(file);
+    }
+
+    /**
+     * Maps a path argument onto a File, relative to this.workingDir if set
+     *
+     * @param arg path argument passed into console
+     * @return file the argument names
+     */
+    private File resolve(String arg) {
+        File file = new File(arg);
+        if (this.workingDir == null || file.isAbsolute() || arg.isEmpty()) {
+            return file;
+        }
+        return new File(this.workingDir, arg);
     }
 
     /**
@@ -240,8 +435,29 @@ public class ParseArgs {
             options.put("prefix", this.prefix);
         }
 
-        if (this.file != null) {
-            options.put("file", this.file);
+        if (this.parallelism != null) {
+            options.put("parallelism", this.parallelism);
+        }
+
+        if (this.outputDir != null) {
+            options.put("outputDir", this.outputDir);
+        }
+
+        if (this.outputFile != null) {
+            options.put("outputFile", this.outputFile);
+        }
+
+        options.put("inPlace", this.inPlace);
+        options.put("stats", this.stats);
+
+        if (this.charset != null) {
+            options.put("charset", this.charset);
+        }
+
+        // "file" is the first FILE, "files" all of them in argument order
+        if (!this.files.isEmpty()) {
+            options.put("file", this.files.get(0));
+            options.put("files", new ArrayList<>(this.files));
         }
 
         return options;
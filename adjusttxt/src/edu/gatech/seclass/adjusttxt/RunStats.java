@@ -0,0 +1,231 @@
+package edu.gatech.seclass.adjusttxt;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Counters and timers of one run, printed to stderr by --stats. Every counter
+ * is a LongAdder, so worker threads can update them without contending on a
+ * single field, and a pipeline without stats pays nothing for them.
+ *
+ * <p>Stage times are summed over every line and every thread, with one pair
+ * of System.nanoTime() calls per line and stage. CPU time and allocation
+ * can only be read per thread, so they are measured around the work each
+ * thread does, not per stage. With -j, only the worker threads are measured,
+ * as the calling thread mostly waits for them. Reading (mapping, decoding
+ * and scanning lines) is the busy time of the measured threads that no
+ * stage accounts for.
+ */
+final class RunStats {
+    // Stages in output order. Times are kept at the same index
+    static final String[] STAGES = {"skipLine", "removeEmptyLines",
+            "processSpacing", "processReversal", "prefix", "write"};
+    static final int SKIP_LINE = 0;
+    static final int REMOVE_EMPTY_LINES = 1;
+    static final int PROCESS_SPACING = 2;
+    static final int PROCESS_REVERSAL = 3;
+    static final int PREFIX = 4;
+    static final int WRITE = 5;
+
+    /**
+     * Work measured on the thread that runs it
+     */
+    interface Work {
+        void run() throws IOException;
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    final LongAdder linesRead = new LongAdder();
+    final LongAdder linesSkipped = new LongAdder();
+    final LongAdder linesWritten = new LongAdder();
+    final LongAdder bytesIn = new LongAdder();
+    final LongAdder bytesOut = new LongAdder();
+    final LongAdder busyNanos = new LongAdder();
+    final LongAdder cpuNanos = new LongAdder();
+    final LongAdder allocatedBytes = new LongAdder();
+    final LongAdder[] stageNanos = new LongAdder[STAGES.length];
+
+    private final long startTime = System.nanoTime();
+    // Called with these stats and the counters of the current job as it
+    // makes progress
+    private final BiConsumer<RunStats, RunStats> progress;
+
+    RunStats() {
+        this(null);
+    }
+
+    /**
+     * @param progress called with these stats and the counters of the
+     *                 current job, once per scanned block of input. Null if
+     *                 not needed
+     */
+    RunStats(BiConsumer<RunStats, RunStats> progress) {
+        this.progress = progress;
+        for (int i = 0; i < this.stageNanos.length; i++) {
+            this.stageNanos[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Runs work and adds its busy time, CPU time and allocation on this
+     * thread
+     *
+     * @param work work to measure. Must not call measure() itself
+     * @throws IOException if work fails
+     */
+    void measure(Work work) throws IOException {
+        long cpu = THREADS.getCurrentThreadCpuTime();
+        long allocated = THREADS.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        try {
+            work.run();
+        } finally {
+            this.busyNanos.add(System.nanoTime() - start);
+            this.cpuNanos.add(THREADS.getCurrentThreadCpuTime() - cpu);
+            this.allocatedBytes.add(
+                    THREADS.getCurrentThreadAllocatedBytes() - allocated);
+        }
+    }
+
+    /**
+     * Reports the progress of a job of this run, if anyone listens. Calls
+     * from worker threads are serialized.
+     *
+     * @param job counters of the job, not yet added to this
+     */
+    void progress(RunStats job) {
+        if (this.progress != null) {
+            synchronized (this) {
+                this.progress.accept(this, job);
+            }
+        }
+    }
+
+    /**
+     * @return wall time since these stats were created
+     */
+    long elapsedNanos() {
+        return System.nanoTime() - this.startTime;
+    }
+
+    /**
+     * Adds all counters of other to this
+     *
+     * @param other counters of one job
+     */
+    void add(RunStats other) {
+        this.linesRead.add(other.linesRead.sum());
+        this.linesSkipped.add(other.linesSkipped.sum());
+        this.linesWritten.add(other.linesWritten.sum());
+        this.bytesIn.add(other.bytesIn.sum());
+        this.bytesOut.add(other.bytesOut.sum());
+        this.busyNanos.add(other.busyNanos.sum());
+        this.cpuNanos.add(other.cpuNanos.sum());
+        this.allocatedBytes.add(other.allocatedBytes.sum());
+        for (int i = 0; i < this.stageNanos.length; i++) {
+            this.stageNanos[i].add(other.stageNanos[i].sum());
+        }
+    }
+
+    /**
+     * Wraps a stream so that every byte written to it counts as output
+     *
+     * @param out stream to wrap
+     * @return counting stream
+     */
+    OutputStream countOutput(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                this.out.write(b);
+                RunStats.this.bytesOut.increment();
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                this.out.write(b, off, len);
+                RunStats.this.bytesOut.add(len);
+            }
+        };
+    }
+
+    /**
+     * Wraps a channel so that every byte read from it counts as input
+     *
+     * @param in channel to wrap
+     * @return counting channel
+     */
+    ReadableByteChannel countInput(ReadableByteChannel in) {
+        return new ReadableByteChannel() {
+            @Override
+            public int read(ByteBuffer dst) throws IOException {
+                int read = in.read(dst);
+                if (read > 0) {
+                    RunStats.this.bytesIn.add(read);
+                }
+                return read;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return in.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                in.close();
+            }
+        };
+    }
+
+    /**
+     * Prints the summary of the run so far
+     *
+     * @param err stream to print to
+     */
+    void print(PrintStream err) {
+        double wall = elapsedNanos() / 1e9;
+        double megabytesIn = this.bytesIn.sum() / (1024.0 * 1024.0);
+
+        err.printf("adjusttxt: lines: %d read, %d skipped, %d written%n",
+                this.linesRead.sum(), this.linesSkipped.sum(),
+                this.linesWritten.sum());
+        err.printf("adjusttxt: bytes: %d in, %d out%n",
+                this.bytesIn.sum(), this.bytesOut.sum());
+        err.printf("adjusttxt: time: %.3f s wall, %.3f s cpu, %.1f MB/s%n",
+                wall, this.cpuNanos.sum() / 1e9,
+                wall > 0 ? megabytesIn / wall : 0.0);
+        err.printf("adjusttxt: allocated: %.1f MB%n",
+                this.allocatedBytes.sum() / (1024.0 * 1024.0));
+
+        // Reading is whatever busy time the stages do not account for
+        long staged = 0;
+        for (LongAdder nanos : this.stageNanos) {
+            staged += nanos.sum();
+        }
+        printStage(err, "read", Math.max(0, this.busyNanos.sum() - staged));
+        for (int i = 0; i < STAGES.length; i++) {
+            // Case: option not toggled. Writing is always shown
+            long nanos = this.stageNanos[i].sum();
+            if (nanos > 0 || i == WRITE) {
+                printStage(err, STAGES[i], nanos);
+            }
+        }
+    }
+
+    // Prints "adjusttxt: stage NAME: TIME ms (SHARE%)"
+    private void printStage(PrintStream err, String name, long nanos) {
+        long busy = this.busyNanos.sum();
+        err.printf("adjusttxt: stage %s: %.1f ms (%.1f%%)%n", name,
+                nanos / 1e6, busy > 0 ? 100.0 * nanos / busy : 0.0);
+    }
+}
@@ -0,0 +1,61 @@
+package edu.gatech.seclass.adjusttxt;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Writes to a stdout PrintStream, failing with {@link Closed} once the
+ * stream has reported an error. A PrintStream swallows the IOException of a
+ * write to a closed pipe, so without this check, adjusttxt big.log | head
+ * would still adjust the whole file after head exits. The same applies to a
+ * daemon client that disconnects mid-run.
+ */
+final class StdoutOutput extends OutputStream {
+    /**
+     * The reader of stdout has gone. Not an error of the run, so it is not
+     * reported
+     */
+    static final class Closed extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        Closed() {
+            super("stdout closed");
+        }
+    }
+
+    private final PrintStream stdout;
+
+    /**
+     * @param stdout stream to write to. Callers buffer in front of this, so
+     *               it is checked once per block rather than per line
+     */
+    StdoutOutput(PrintStream stdout) {
+        this.stdout = stdout;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        this.stdout.write(b);
+        check();
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        this.stdout.write(b, off, len);
+        check();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        check();
+    }
+
+    // checkError() flushes stdout, so a write that only filled its buffer
+    // is also reported
+    private void check() throws Closed {
+        if (this.stdout.checkError()) {
+            throw new Closed();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package edu.gatech.seclass.adjusttxt;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Reads input that cannot be mapped or seeked, such as stdin or a named
+ * pipe, as a stream. Bytes are read into one buffer that only grows to hold
+ * the longest line, so memory stays bounded regardless of input size.
+ *
+ * <p>The trailing "\n" is checked on the last byte seen at EOF. Every
+ * complete line before it has been written to out by then, and a last line
+ * without a terminator is always withheld, so the output stops on a line
+ * boundary. Callers flush out before reporting the error, so the complete
+ * lines are not lost.
+ *
+ * <p>Only bytes that have not been searched yet are searched for "\n" after
+ * each read, so a long line arriving in many reads is not rescanned from its
+ * start every time.
+ */
+final class StreamInput {
+    // Initial size of the read buffer. Doubled for longer lines
+    static final int BUFFER_SIZE = 64 << 10;
+
+    private static final byte LF = '\n';
+
+    private StreamInput() {
+    }
+
+    /**
+     * Reads in until EOF and runs each line through the pipeline
+     *
+     * @param in input stream. Not closed
+     * @param charset charset of the input. Must be supported by MappedInput
+     * @param pipeline compiled options
+     * @param out sink for the adjusted lines. Flushing is left to the caller
+     * @throws IllegalArgumentException if non-empty input does not end with
+     *                                  "\n"
+     * @throws IOException if reading in or writing to out fails
+     */
+    static void run(ReadableByteChannel in, Charset charset,
+                    LinePipeline pipeline, Writer out) throws IOException {
+        LineScanner scanner = new LineScanner(pipeline, charset, 1, out);
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        // Last byte seen, to check the trailing "\n" at EOF
+        byte last = LF;
+
+        // Bytes [0, searched) of buffer are known to hold no "\n"
+        int searched = 0;
+
+        while (true) {
+            int read = in.read(buffer);
+            int filled = buffer.position();
+
+            if (read < 0) {
+                if (last != LF) {
+                    throw new IllegalArgumentException(
+                            "File does not end with newline");
+                }
+                scanner.scan(buffer, filled, true);
+                return;
+            }
+
+            if (read > 0) {
+                last = buffer.get(filled - 1);
+            }
+
+            // Case: no "\n" in the new bytes. Read more before scanning
+            int consumed = 0;
+            if (ByteKernels.indexOf(buffer, searched, filled, LF) >= 0) {
+                consumed = scanner.scan(buffer, filled, false);
+            }
+            searched = filled - consumed;
+
+            // Case: buffer full without a complete line. Grow it
+            if (consumed == 0 && !buffer.hasRemaining()) {
+                ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+                continue;
+            }
+
+            // Keep the incomplete line at the start of the buffer
+            buffer.limit(filled).position(consumed);
+            buffer.compact();
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package edu.gatech.seclass.adjusttxt;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the 8-bytes-at-a-time ByteKernels against plain byte loops: matches
+ * in every lane of a long and in the partial word at the end of a range,
+ * bytes at or above 0x80 in every lane, unaligned ranges, and buffers in both
+ * byte orders, heap and direct.
+ */
+public class ByteKernelsTest {
+    private static final byte LF = '\n';
+
+    // Bytes that only differ from "\n" in their high bit, or have it set
+    private static final byte[] HIGH_BYTES = {
+            (byte) 0x8A, (byte) 0x80, (byte) 0xFF, (byte) 0xC3};
+
+    // Longest range checked exhaustively: two full longs and a partial one
+    private static final int MAX_LENGTH = 24;
+
+    /* ----------------------------- Test Utilities ----------------------------- */
+
+    /**
+     * @return bytes copied into a heap and a direct buffer, each in both
+     *         byte orders
+     */
+    private static ByteBuffer[] buffers(byte[] bytes) {
+        ByteBuffer[] buffers = new ByteBuffer[4];
+        int i = 0;
+        for (ByteOrder order : new ByteOrder[]{
+                ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            buffers[i++] = ByteBuffer.wrap(bytes.clone()).order(order);
+            ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length)
+                    .order(order);
+            direct.put(bytes).clear();
+            buffers[i++] = direct;
+        }
+        return buffers;
+    }
+
+    private static int scalarIndexOf(byte[] bytes, int from, int to, byte b) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static long scalarCount(byte[] bytes, int from, int to, byte b) {
+        long count = 0;
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == b) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /* ------------------------------- Test Cases ------------------------------- */
+
+    /**
+     * Scenario: a single "\n" at every position of every range up to three
+     * longs, among bytes with their high bit set
+     */
+    @Test
+    public void indexOfEveryLane() {
+        for (byte filler : HIGH_BYTES) {
+            for (int length = 0; length <= MAX_LENGTH; length++) {
+                for (int from = 0; from <= Math.min(length, 9); from++) {
+                    for (int at = from - 1; at < length; at++) {
+                        byte[] bytes = new byte[length];
+                        Arrays.fill(bytes, filler);
+                        if (at >= from) {
+                            bytes[at] = LF;
+                        }
+
+                        int expected = at >= from ? at : -1;
+                        for (ByteBuffer buffer : buffers(bytes)) {
+                            Assertions.assertEquals(expected,
+                                    ByteKernels.indexOf(buffer, from, length, LF),
+                                    "length " + length + ", from " + from
+                                            + ", filler " + filler + ", "
+                                            + buffer);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Scenario: the last "\n" sits in the partial word after the last full
+     * long, and earlier "\n" before from are ignored
+     */
+    @Test
+    public void indexOfInLastPartialWord() {
+        byte[] bytes = "\nabcdefghijklmn\nxy\n".getBytes();
+        for (ByteBuffer buffer : buffers(bytes)) {
+            Assertions.assertEquals(15, ByteKernels.indexOf(buffer, 1,
+                    bytes.length, LF));
+            Assertions.assertEquals(18, ByteKernels.indexOf(buffer, 16,
+                    bytes.length, LF));
+            Assertions.assertEquals(-1, ByteKernels.indexOf(buffer, 16,
+                    bytes.length - 1, LF));
+        }
+    }
+
+    /**
+     * Scenario: random bytes, biased towards "\n" and its high-bit lookalikes,
+     * over random unaligned ranges
+     */
+    @Test
+    public void indexOfAndCountMatchScalar() {
+        byte[] alphabet = {LF, (byte) 0x8A, (byte) 0xFF, 0x00, 0x0B, 0x09,
+                'a', (byte) 0x80};
+        Random random = new Random(16);
+        for (int round = 0; round < 2000; round++) {
+            byte[] bytes = new byte[random.nextInt(100)];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = alphabet[random.nextInt(alphabet.length)];
+            }
+            int from = bytes.length == 0 ? 0 : random.nextInt(bytes.length);
+            int to = from + random.nextInt(bytes.length - from + 1);
+            byte b = alphabet[random.nextInt(alphabet.length)];
+
+            for (ByteBuffer buffer : buffers(bytes)) {
+                Assertions.assertEquals(scalarIndexOf(bytes, from, to, b),
+                        ByteKernels.indexOf(buffer, from, to, b));
+                Assertions.assertEquals(scalarCount(bytes, from, to, b),
+                        ByteKernels.count(buffer, from, to, b));
+            }
+        }
+    }
+
+    /**
+     * Scenario: "\n" in every lane at once, and in none of them
+     */
+    @Test
+    public void countFullAndEmptyWords() {
+        for (int length = 0; length <= MAX_LENGTH; length++) {
+            byte[] newlines = new byte[length];
+            Arrays.fill(newlines, LF);
+            byte[] lookalikes = new byte[length];
+            Arrays.fill(lookalikes, (byte) 0x8A);
+
+            for (ByteBuffer buffer : buffers(newlines)) {
+                Assertions.assertEquals(length,
+                        ByteKernels.count(buffer, 0, length, LF));
+            }
+            for (ByteBuffer buffer : buffers(lookalikes)) {
+                Assertions.assertEquals(0,
+                        ByteKernels.count(buffer, 0, length, LF));
+            }
+        }
+    }
+
+    /**
+     * Scenario: a byte at or above 0x80 at every position of every range up
+     * to three longs
+     */
+    @Test
+    public void asciiPrefixEveryLane() {
+        for (byte high : HIGH_BYTES) {
+            for (int length = 0; length <= MAX_LENGTH; length++) {
+                for (int from = 0; from <= Math.min(length, 9); from++) {
+                    for (int at = from - 1; at < length; at++) {
+                        byte[] bytes = new byte[length];
+                        Arrays.fill(bytes, (byte) 0x7F);
+                        if (at >= from) {
+                            bytes[at] = high;
+                        }
+
+                        Assertions.assertEquals(at >= from ? at : length,
+                                ByteKernels.asciiPrefix(bytes, from, length),
+                                "length " + length + ", from " + from
+                                        + ", at " + at + ", byte " + high);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Scenario: only the first non-ASCII byte counts when a later lane of
+     * the same long also has its high bit set
+     */
+    @Test
+    public void asciiPrefixFirstOfSeveral() {
+        for (int first = 0; first < 16; first++) {
+            byte[] bytes = new byte[MAX_LENGTH];
+            Arrays.fill(bytes, (byte) 'a');
+            bytes[first] = (byte) 0xC3;
+            for (int later = first + 1; later < MAX_LENGTH; later++) {
+                bytes[later] = (byte) 0xA9;
+            }
+            Assertions.assertEquals(first,
+                    ByteKernels.asciiPrefix(bytes, 0, bytes.length));
+        }
+    }
+}
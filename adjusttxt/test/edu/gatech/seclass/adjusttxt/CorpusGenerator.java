@@ -0,0 +1,473 @@
+package edu.gatech.seclass.adjusttxt;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Generates a deterministic input corpus from the category-partition test
+ * frames in catpart.txt.tsl (as produced by TSLgenerator from catpart.txt).
+ * Every valid frame becomes one input file, shaped by the frame's choices
+ * (no, one or multiple lines, and which options run on it) and scaled by
+ * size dimensions the frames do not cover: line count, line length,
+ * whitespace run length and fraction of empty lines.
+ *
+ * <p>Frames only name their choices. Their properties and [if] conditions
+ * are looked up in the category-partition spec the frames were generated
+ * from, catpart.txt, and decide how many lines a file gets.
+ *
+ * <p>Most error frames describe invalid command lines rather than inputs, so
+ * no file is generated for them. The exception is a file that does not end
+ * with a newline, which is generated with its last "\n" dropped. A
+ * manifest.tsv next to the files lists each file, whether adjusttxt should
+ * accept it ("valid" or "error") and the adjusttxt options of its frame. The
+ * same seed always produces the same corpus.
+ *
+ * <p>Usage: CorpusGenerator [--seed N] [--lines N] [--line-length N]
+ * [--whitespace-run N] [--empty-fraction F] [--spec SPEC_FILE] TSL_FILE
+ * OUTPUT_DIR. SPEC_FILE defaults to TSL_FILE without its ".tsl" extension.
+ */
+final class CorpusGenerator {
+    private static final Pattern FRAME = Pattern.compile(
+            "^Test Case (\\d+)\\s*(?:<(\\w+)>)?\\s*"
+                    + "(\\(follows \\[if]\\))?.*$");
+    private static final Pattern CHOICE = Pattern.compile(
+            "^\\s+(.+?)\\s*:\\s+(.+?)\\s*$");
+    private static final Pattern SPEC_CATEGORY = Pattern.compile(
+            "^\\s+(.+?)\\s*:\\s*$");
+    private static final Pattern SPEC_CHOICE = Pattern.compile(
+            "^\\s+([^\\[]+?)\\.\\s*(.*)$");
+    private static final Pattern ANNOTATION = Pattern.compile(
+            "\\[(\\w+)\\s*([^]]*)]");
+    private static final String LETTERS =
+            "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789.,:=/";
+    private static final String PREFIX = ">>";
+
+    /**
+     * Size dimensions of a generated file
+     */
+    static final class Shape {
+        final long lines;
+        final int lineLength;
+        final int whitespaceRun;
+        final double emptyFraction;
+
+        /**
+         * @param lines number of lines for frames with multiple lines
+         * @param lineLength mean length of a non-empty line. Lengths are
+         *                   uniform in [1, 2 * lineLength - 1]
+         * @param whitespaceRun longest run of whitespace between words
+         * @param emptyFraction fraction of lines that are empty or only
+         *                      whitespace
+         */
+        Shape(long lines, int lineLength, int whitespaceRun,
+              double emptyFraction) {
+            if (lines < 0 || lineLength < 1 || whitespaceRun < 1
+                    || emptyFraction < 0 || emptyFraction > 1) {
+                throw new IllegalArgumentException("Invalid corpus shape");
+            }
+            this.lines = lines;
+            this.lineLength = lineLength;
+            this.whitespaceRun = whitespaceRun;
+            this.emptyFraction = emptyFraction;
+        }
+    }
+
+    /**
+     * Annotations of one choice in the spec
+     */
+    static final class Choice {
+        // Properties the [if] condition requires, e.g. "emptyFile". Empty if
+        // the choice has no condition
+        final Set<String> requires = new HashSet<>();
+        final Set<String> properties = new HashSet<>();
+        boolean hasElse;
+    }
+
+    /**
+     * One test frame of the TSL file
+     */
+    static final class Frame {
+        final int number;
+        final String tag;
+        final boolean followsIf;
+        final Map<String, String> choices = new LinkedHashMap<>();
+
+        // Properties that hold in this frame, from the spec
+        final Set<String> properties = new HashSet<>();
+
+        Frame(int number, String tag, boolean followsIf) {
+            this.number = number;
+            this.tag = tag;
+            this.followsIf = followsIf;
+        }
+
+        boolean isError() {
+            return "error".equals(this.tag);
+        }
+
+        boolean endsWithNewline() {
+            return !"No".equals(this.choices.get("Ends with newline"));
+        }
+    }
+
+    private CorpusGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        long seed = 42;
+        long lines = 100_000;
+        int lineLength = 80;
+        int whitespaceRun = 4;
+        double emptyFraction = 0.1;
+        Path spec = null;
+
+        int i = 0;
+        for (; i < args.length - 2; i += 2) {
+            switch (args[i]) {
+                case "--seed":
+                    seed = Long.parseLong(args[i + 1]);
+                    break;
+                case "--lines":
+                    lines = Long.parseLong(args[i + 1]);
+                    break;
+                case "--line-length":
+                    lineLength = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--whitespace-run":
+                    whitespaceRun = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--empty-fraction":
+                    emptyFraction = Double.parseDouble(args[i + 1]);
+                    break;
+                case "--spec":
+                    spec = Paths.get(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException(
+                            "Invalid option: " + args[i]);
+            }
+        }
+
+        if (args.length - i != 2) {
+            throw new IllegalArgumentException(
+                    "Usage: CorpusGenerator [--seed N] [--lines N] "
+                            + "[--line-length N] [--whitespace-run N] "
+                            + "[--empty-fraction F] [--spec SPEC_FILE] "
+                            + "TSL_FILE OUTPUT_DIR");
+        }
+
+        Path tsl = Paths.get(args[i]);
+        List<Frame> frames = parse(tsl, spec != null ? spec : specOf(tsl));
+        generate(frames, new Shape(lines, lineLength, whitespaceRun,
+                emptyFraction), seed, Paths.get(args[i + 1]));
+    }
+
+    /**
+     * @param tslFile frames generated by TSLgenerator
+     * @return the spec tslFile was generated from: its path without ".tsl"
+     */
+    static Path specOf(Path tslFile) {
+        String name = tslFile.getFileName().toString();
+        return tslFile.resolveSibling(name.endsWith(".tsl")
+                ? name.substring(0, name.length() - ".tsl".length())
+                : name);
+    }
+
+    /**
+     * Reads the test frames of a TSL file, with the properties that hold in
+     * each according to the spec
+     *
+     * @param tslFile frames generated from specFile
+     * @param specFile category-partition spec, such as catpart.txt
+     * @return frames in file order
+     * @throws IOException if reading tslFile or specFile fails
+     * @throws IllegalArgumentException if a frame has a choice that is not
+     *                                  in specFile
+     */
+    static List<Frame> parse(Path tslFile, Path specFile) throws IOException {
+        Map<String, Map<String, Choice>> spec = parseSpec(specFile);
+        List<Frame> frames = new ArrayList<>();
+        Frame frame = null;
+
+        for (String line : Files.readAllLines(tslFile)) {
+            Matcher header = FRAME.matcher(line);
+            if (header.matches()) {
+                frame = new Frame(Integer.parseInt(header.group(1)),
+                        header.group(2), header.group(3) != null);
+                frames.add(frame);
+                continue;
+            }
+
+            Matcher choice = CHOICE.matcher(line);
+            if (frame != null && choice.matches()) {
+                frame.choices.put(choice.group(1), choice.group(2));
+            }
+        }
+
+        for (Frame f : frames) {
+            for (Map.Entry<String, String> entry : f.choices.entrySet()) {
+                Choice choice = spec.getOrDefault(entry.getKey(), Map.of())
+                        .get(entry.getValue());
+                if (choice == null) {
+                    throw new IllegalArgumentException("Test Case " + f.number
+                            + ": no choice " + entry.getKey() + ": "
+                            + entry.getValue() + " in " + specFile);
+                }
+                f.properties.addAll(choice.properties);
+
+                // A choice with [else] is also used where its condition
+                // does not hold, except in the frame generated for [if]
+                if (!choice.hasElse || f.followsIf) {
+                    f.properties.addAll(choice.requires);
+                }
+            }
+        }
+
+        return frames;
+    }
+
+    /**
+     * Reads the categories and choices of a category-partition spec
+     *
+     * @param specFile spec, such as catpart.txt
+     * @return choices by category and name. Names drop their final "."
+     * @throws IOException if reading specFile fails
+     * @throws IllegalArgumentException if a condition is not a conjunction
+     */
+    static Map<String, Map<String, Choice>> parseSpec(Path specFile)
+            throws IOException {
+        Map<String, Map<String, Choice>> spec = new LinkedHashMap<>();
+        Map<String, Choice> category = null;
+
+        for (String line : Files.readAllLines(specFile)) {
+            // Case: comment or blank line
+            if (line.isBlank() || line.trim().startsWith("#")) {
+                continue;
+            }
+
+            Matcher header = SPEC_CATEGORY.matcher(line);
+            if (header.matches()) {
+                category = new LinkedHashMap<>();
+                spec.put(header.group(1), category);
+                continue;
+            }
+
+            Matcher entry = SPEC_CHOICE.matcher(line);
+            if (category == null || !entry.matches()) {
+                continue;
+            }
+
+            Choice choice = new Choice();
+            Matcher annotation = ANNOTATION.matcher(entry.group(2));
+            while (annotation.find()) {
+                String value = annotation.group(2).trim();
+                switch (annotation.group(1)) {
+                    case "if":
+                        // Case: a || condition requires no property alone
+                        if (value.contains("||")) {
+                            throw new IllegalArgumentException(
+                                    "Unsupported condition: " + value);
+                        }
+                        for (String literal : value.split("&&")) {
+                            if (!literal.trim().startsWith("!")) {
+                                choice.requires.add(literal.trim());
+                            }
+                        }
+                        break;
+                    case "property":
+                        for (String property : value.split(",")) {
+                            choice.properties.add(property.trim());
+                        }
+                        break;
+                    case "else":
+                        choice.hasElse = true;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            category.put(entry.group(1).trim(), choice);
+        }
+
+        return spec;
+    }
+
+    /**
+     * Writes one file per valid frame, and the manifest, into outputDir
+     *
+     * @param frames frames to generate
+     * @param shape size dimensions of every file
+     * @param seed seed of the corpus
+     * @param outputDir directory for the files. Created if missing
+     * @throws IOException if writing a file fails
+     */
+    static void generate(List<Frame> frames, Shape shape, long seed,
+                         Path outputDir) throws IOException {
+        Files.createDirectories(outputDir);
+
+        try (Writer manifest = Files.newBufferedWriter(
+                outputDir.resolve("manifest.tsv"), StandardCharsets.UTF_8)) {
+            for (Frame frame : frames) {
+                if (frame.isError() && frame.endsWithNewline()) {
+                    continue;
+                }
+
+                String name = String.format("frame-%03d.txt", frame.number);
+                Random random = new Random(seed * 31 + frame.number);
+                try (Writer out = new BufferedWriter(Files.newBufferedWriter(
+                        outputDir.resolve(name), StandardCharsets.UTF_8),
+                        1 << 16)) {
+                    writeLines(random, shape, lineCount(frame, shape), out);
+                    // Case: unterminated last line
+                    if (!frame.endsWithNewline()) {
+                        StringBuilder last = new StringBuilder("end");
+                        appendLine(random, shape, last);
+                        out.append(last);
+                    }
+                }
+
+                manifest.write(name + "\t"
+                        + (frame.isError() ? "error" : "valid") + "\t"
+                        + String.join(" ", options(frame)) + "\n");
+            }
+        }
+    }
+
+    /**
+     * Writes count generated lines, each ending with "\n"
+     *
+     * @param random source of randomness. Determines the lines
+     * @param shape size dimensions
+     * @param count number of lines
+     * @param out sink for the lines
+     * @throws IOException if writing to out fails
+     */
+    static void writeLines(Random random, Shape shape, long count, Writer out)
+            throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (long i = 0; i < count; i++) {
+            line.setLength(0);
+            appendLine(random, shape, line);
+            line.append('\n');
+            out.append(line);
+        }
+    }
+
+    /**
+     * Appends one generated line, without its "\n"
+     *
+     * @param random source of randomness. Determines the line
+     * @param shape size dimensions
+     * @param line sink for the line
+     */
+    static void appendLine(Random random, Shape shape, StringBuilder line) {
+        // Case: empty line. Half of them are whitespace only
+        if (random.nextDouble() < shape.emptyFraction) {
+            if (random.nextBoolean()) {
+                appendWhitespace(random, shape, line);
+            }
+            return;
+        }
+
+        int length = 1 + random.nextInt(2 * shape.lineLength - 1);
+        int end = line.length() + length;
+
+        // Leading and trailing whitespace on about half the lines each
+        if (random.nextBoolean()) {
+            appendWhitespace(random, shape, line);
+        }
+        boolean trailing = random.nextBoolean();
+
+        while (line.length() < end) {
+            int word = 1 + random.nextInt(10);
+            for (int i = 0; i < word && line.length() < end; i++) {
+                line.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+            }
+            if (line.length() < end) {
+                appendWhitespace(random, shape, line);
+            }
+        }
+
+        if (trailing) {
+            appendWhitespace(random, shape, line);
+        }
+    }
+
+    // Appends a run of 1 to shape.whitespaceRun spaces and tabs
+    private static void appendWhitespace(Random random, Shape shape,
+                                         StringBuilder line) {
+        int run = 1 + random.nextInt(shape.whitespaceRun);
+        for (int i = 0; i < run; i++) {
+            line.append(random.nextInt(4) == 0 ? '\t' : ' ');
+        }
+    }
+
+    // Number of lines the frame's properties ask for
+    private static long lineCount(Frame frame, Shape shape) {
+        if (frame.properties.contains("emptyFile")) {
+            return 0;
+        }
+        if (frame.properties.contains("singleLine")) {
+            return 1;
+        }
+        return shape.lines;
+    }
+
+    // adjusttxt options of the frame's choices
+    private static List<String> options(Frame frame) {
+        List<String> options = new ArrayList<>();
+        String s = frame.choices.getOrDefault("-s", "Not toggled");
+        String w = frame.choices.getOrDefault("-w", "Not toggled");
+        String x = frame.choices.getOrDefault("-x", "Not toggled");
+        String r = frame.choices.getOrDefault("-r", "Not toggled");
+        String p = frame.choices.getOrDefault("-p", "Not toggled");
+
+        if (s.startsWith("Zero")) {
+            options.add("-s");
+            options.add("0");
+        } else if (s.startsWith("One")) {
+            options.add("-s");
+            options.add("1");
+        }
+
+        for (String spacing : new String[]{"leading", "trailing", "all"}) {
+            if (w.startsWith(spacing)) {
+                options.add("-w");
+                options.add(spacing);
+            }
+        }
+
+        if (x.equals("Toggled")) {
+            options.add("-x");
+        }
+
+        if (r.startsWith("text")) {
+            options.add("-r");
+            options.add("text");
+        } else if (r.startsWith("words")) {
+            options.add("-r");
+            options.add("words");
+        }
+
+        if (p.equals("Not empty")) {
+            options.add("-p");
+            options.add(PREFIX);
+        }
+
+        return options;
+    }
+}
@@ -0,0 +1,232 @@
+package edu.gatech.seclass.adjusttxt;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that CorpusGenerator reads TSL frames, writes one file per frame
+ * with input, lists them in the manifest and is deterministic for a seed
+ */
+public class CorpusGeneratorTest {
+    @TempDir Path tempDirectory;
+
+    // Categories of catpart.txt the frames below use
+    private static final String SPEC = "# File param\n"
+            + "    File included (as last param):\n"
+            + "        Yes. [property validFile]\n"
+            + "        No. [error]\n"
+            + "    Number of lines:\n"
+            + "        None. [if validFile] [property emptyFile]\n"
+            + "        One. [if validFile] [property singleLine]\n"
+            + "        Multiple. [if validFile] [property multipleLines]\n"
+            + "    Ends with newline:\n"
+            + "        Yes. [if validFile]\n"
+            + "        No. [if validFile] [error]\n"
+            + "\n"
+            + "# Options\n"
+            + "    -s:\n"
+            + "        Zero. [if emptyFile] [single] [else]\n"
+            + "        One, no lines in file. [if emptyFile] [single]\n"
+            + "        One, 1+ lines in file. [if validFile && !emptyFile]"
+            + " [single]\n"
+            + "        Not toggled.\n"
+            + "    -w:\n"
+            + "        all. [property wToggled]\n"
+            + "        Not toggled.\n"
+            + "    -x:\n"
+            + "        Toggled. [if !wToggled] [single]\n"
+            + "        Not toggled.\n"
+            + "    -r:\n"
+            + "        text. [if emptyFile] [single] [else]\n"
+            + "        Not toggled.\n"
+            + "    -p:\n"
+            + "        Not empty. [if emptyFile] [single] [else]\n"
+            + "        Not toggled.";
+
+    // Frames in the layout of catpart.txt.tsl: an error frame without input,
+    // an error frame for a missing trailing newline, two single frames that
+    // require an empty file, one through an [else] choice, and a full frame
+    private static final String TSL = "\n"
+            + "Test Case 1  \t\t<error>\n"
+            + "   File included (as last param) :  No\n"
+            + "\n\n"
+            + "Test Case 2  \t\t<error>  (follows [if])\n"
+            + "   Ends with newline :  No\n"
+            + "\n\n"
+            + "Test Case 3  \t\t<single>  (follows [if])\n"
+            + "   -s :  Zero\n"
+            + "\n\n"
+            + "Test Case 4  \t\t<single>  (follows [if])\n"
+            + "   -s :  One, no lines in file\n"
+            + "\n\n"
+            + "Test Case 50 \t\t(Key = 1.3.1.7.6.3.1.1.)\n"
+            + "   File included (as last param) :  Yes\n"
+            + "   Number of lines               :  Multiple\n"
+            + "   Ends with newline             :  Yes\n"
+            + "   -s                            :  Not toggled\n"
+            + "   -w                            :  all\n"
+            + "   -x                            :  Not toggled\n"
+            + "   -r                            :  text\n"
+            + "   -p                            :  Not empty\n";
+
+    private static final CorpusGenerator.Shape SHAPE =
+            new CorpusGenerator.Shape(50, 20, 3, 0.2);
+
+    /* ----------------------------- Test Utilities ----------------------------- */
+
+    /**
+     * Writes SPEC and TSL, as frames and frames.tsl, and parses them
+     */
+    private List<CorpusGenerator.Frame> parse() throws IOException {
+        Files.writeString(this.tempDirectory.resolve("frames"), SPEC);
+        Path tsl = this.tempDirectory.resolve("frames.tsl");
+        Files.writeString(tsl, TSL);
+        return CorpusGenerator.parse(tsl, CorpusGenerator.specOf(tsl));
+    }
+
+    /**
+     * Generates the corpus of TSL with seed into a new directory
+     */
+    private Path generate(long seed, String name) throws IOException {
+        Path dir = this.tempDirectory.resolve(name);
+        CorpusGenerator.generate(parse(), SHAPE, seed, dir);
+        return dir;
+    }
+
+    private static long newlines(byte[] bytes) {
+        long count = 0;
+        for (byte b : bytes) {
+            if (b == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /* ------------------------------- Test Cases ------------------------------- */
+
+    /**
+     * Scenario: frame numbers, tags and choices are read from the snippet
+     */
+    @Test
+    public void parsesFrames() throws IOException {
+        List<CorpusGenerator.Frame> frames = parse();
+
+        Assertions.assertEquals(5, frames.size());
+        Assertions.assertEquals(2, frames.get(1).number);
+        Assertions.assertTrue(frames.get(1).isError());
+        Assertions.assertFalse(frames.get(1).endsWithNewline());
+        Assertions.assertEquals("single", frames.get(3).tag);
+        Assertions.assertEquals("One, no lines in file",
+                frames.get(3).choices.get("-s"));
+
+        CorpusGenerator.Frame full = frames.get(4);
+        Assertions.assertNull(full.tag);
+        Assertions.assertFalse(full.isError());
+        Assertions.assertTrue(full.endsWithNewline());
+        Assertions.assertEquals(8, full.choices.size());
+        Assertions.assertEquals("all", full.choices.get("-w"));
+    }
+
+    /**
+     * Scenario: properties come from the spec. A frame that follows the
+     * [if] of its choice has the properties the condition requires, also
+     * for a choice with [else]. A full frame only has the properties of
+     * its choices
+     */
+    @Test
+    public void frameProperties() throws IOException {
+        List<CorpusGenerator.Frame> frames = parse();
+
+        Assertions.assertEquals(Set.of("validFile"), frames.get(1).properties);
+        Assertions.assertEquals(Set.of("emptyFile"), frames.get(2).properties);
+        Assertions.assertEquals(Set.of("emptyFile"), frames.get(3).properties);
+        Assertions.assertEquals(
+                Set.of("validFile", "multipleLines", "wToggled"),
+                frames.get(4).properties);
+    }
+
+    /**
+     * Scenario: a frame with a choice the spec does not have is rejected
+     */
+    @Test
+    public void unknownChoice() throws IOException {
+        Files.writeString(this.tempDirectory.resolve("frames"), SPEC);
+        Path tsl = this.tempDirectory.resolve("frames.tsl");
+        Files.writeString(tsl, "Test Case 1  \t\t<single>\n   -s :  Two\n");
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> CorpusGenerator.parse(tsl, CorpusGenerator.specOf(tsl)));
+    }
+
+    /**
+     * Scenario: one manifest row per generated file, with its status and
+     * options. The error frame without input gets no file
+     */
+    @Test
+    public void manifestRows() throws IOException {
+        Path dir = generate(7, "corpus");
+
+        Assertions.assertEquals(List.of(
+                        "frame-002.txt\terror\t",
+                        "frame-003.txt\tvalid\t-s 0",
+                        "frame-004.txt\tvalid\t-s 1",
+                        "frame-050.txt\tvalid\t-w all -r text -p >>"),
+                Files.readAllLines(dir.resolve("manifest.tsv")));
+        Assertions.assertFalse(Files.exists(dir.resolve("frame-001.txt")));
+    }
+
+    /**
+     * Scenario: file sizes follow the frames. The frame for a missing
+     * trailing newline drops only its last "\n", and both frames that
+     * require an empty file are empty
+     */
+    @Test
+    public void fileContents() throws IOException {
+        Path dir = generate(7, "corpus");
+
+        byte[] noNewline = Files.readAllBytes(dir.resolve("frame-002.txt"));
+        Assertions.assertTrue(noNewline.length > 0);
+        Assertions.assertNotEquals('\n', noNewline[noNewline.length - 1]);
+        Assertions.assertEquals(SHAPE.lines, newlines(noNewline));
+
+        Assertions.assertEquals(0, Files.size(dir.resolve("frame-003.txt")));
+        Assertions.assertEquals(0, Files.size(dir.resolve("frame-004.txt")));
+
+        byte[] full = Files.readAllBytes(dir.resolve("frame-050.txt"));
+        Assertions.assertEquals('\n', full[full.length - 1]);
+        Assertions.assertEquals(SHAPE.lines, newlines(full));
+        Assertions.assertEquals(full.length, new String(full,
+                StandardCharsets.UTF_8).length());
+    }
+
+    /**
+     * Scenario: the same seed gives byte-identical files, another seed does
+     * not
+     */
+    @Test
+    public void sameSeedSameCorpus() throws IOException {
+        Path first = generate(7, "first");
+        Path second = generate(7, "second");
+        Path other = generate(8, "other");
+
+        for (String name : new String[]{"manifest.tsv", "frame-002.txt",
+                "frame-003.txt", "frame-004.txt", "frame-050.txt"}) {
+            Assertions.assertArrayEquals(
+                    Files.readAllBytes(first.resolve(name)),
+                    Files.readAllBytes(second.resolve(name)), name);
+        }
+        Assertions.assertFalse(Arrays.equals(
+                Files.readAllBytes(first.resolve("frame-050.txt")),
+                Files.readAllBytes(other.resolve("frame-050.txt"))));
+    }
+}
@@ -0,0 +1,195 @@
+package edu.gatech.seclass.adjusttxt;
+
+import edu.gatech.seclass.adjusttxt.AdjustTxtInterface.LineToSkip;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks line numbering and output past the 32-bit limits. The tests that
+ * generate multi-GB files only run with -Dadjusttxt.hugeTests=true, as they
+ * need several GB of disk space and take a while.
+ */
+public class HugeFileTest {
+    @TempDir Path tempDirectory;
+
+    /* ----------------------------- Test Utilities ----------------------------- */
+
+    /**
+     * Writer that only counts what is written to it and keeps the last chars
+     */
+    private static class CountingWriter extends Writer {
+        private final char[] tail = new char[64];
+        private long chars = 0;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            int n = Math.min(len, this.tail.length);
+            System.arraycopy(this.tail, n, this.tail, 0, this.tail.length - n);
+            System.arraycopy(cbuf, off + len - n, this.tail,
+                    this.tail.length - n, n);
+            this.chars += len;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        long chars() {
+            return this.chars;
+        }
+
+        String tail(int length) {
+            return new String(this.tail, this.tail.length - length, length);
+        }
+    }
+
+    /**
+     * Writes count copies of block to channel
+     */
+    private static void repeat(FileChannel channel, byte[] block, long count)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(block);
+        for (long i = 0; i < count; i++) {
+            buffer.rewind();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Writes a sparse file of lines lines of lineLength bytes each. The lines
+     * are NUL bytes, so only the pages holding a "\n" are allocated
+     */
+    private static void sparseLines(Path file, long lineLength, long lines)
+            throws IOException {
+        ByteBuffer newline = ByteBuffer.allocate(1);
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE,
+                StandardOpenOption.SPARSE)) {
+            for (long line = 1; line <= lines; line++) {
+                newline.clear();
+                newline.put(0, (byte) '\n');
+                channel.write(newline, line * lineLength - 1);
+            }
+        }
+    }
+
+    private static LinePipeline skipping(LineToSkip lineToSkip,
+                                         boolean removeEmptyLines) {
+        return LinePipeline.compile(lineToSkip, null, removeEmptyLines, null,
+                null, null);
+    }
+
+    /* ------------------------------- Test Cases ------------------------------- */
+
+    /**
+     * Scenario: -s keeps its parity when line numbers pass Integer.MAX_VALUE
+     */
+    @Test
+    public void lineNumbersPastIntRange() throws IOException {
+        StringWriter out = new StringWriter();
+        LineScanner scanner = new LineScanner(skipping(LineToSkip.odd, false),
+                StandardCharsets.UTF_8, Integer.MAX_VALUE - 1L, out);
+
+        byte[] input = "a\nb\nc\nd\n".getBytes(StandardCharsets.UTF_8);
+        scanner.scan(ByteBuffer.wrap(input), input.length, true);
+
+        Assertions.assertEquals("a\nc\n", out.toString());
+        Assertions.assertEquals(Integer.MAX_VALUE + 3L, scanner.lineNumber());
+    }
+
+    /**
+     * Scenario: a file with more than 2^31 lines, sequential and parallel
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "adjusttxt.hugeTests", matches = "true")
+    public void moreThanIntMaxLines() throws IOException {
+        Path file = tempDirectory.resolve("lines.txt");
+        byte[] emptyLines = new byte[1 << 20];
+        Arrays.fill(emptyLines, (byte) '\n');
+
+        // 2^31 empty lines, then lines 2^31 + 1 to 2^31 + 3
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            repeat(channel, emptyLines, (1L << 31) / emptyLines.length);
+            repeat(channel, "x\ny\nz\n".getBytes(StandardCharsets.UTF_8), 1);
+        }
+
+        // Only line 2^31 + 2 is even and not empty
+        for (int parallelism : new int[]{1, 4}) {
+            StringWriter out = new StringWriter();
+            skipping(LineToSkip.odd, true).run(file.toFile(), parallelism, out);
+            Assertions.assertEquals("y\n", out.toString());
+        }
+    }
+
+    /**
+     * Scenario: a sparse file larger than 4 GB, sequential and parallel
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "adjusttxt.hugeTests", matches = "true")
+    public void multiGigabyteFile() throws IOException {
+        Path file = tempDirectory.resolve("sparse.txt");
+        long lineLength = 1L << 20;
+        long lines = 5L << 10;
+
+        sparseLines(file, lineLength, lines);
+
+        // Odd lines are kept, each with its "\n"
+        for (int parallelism : new int[]{1, 4}) {
+            CountingWriter out = new CountingWriter();
+            skipping(LineToSkip.even, false).run(file.toFile(), parallelism,
+                    out);
+            Assertions.assertEquals((lines / 2) * lineLength, out.chars());
+            Assertions.assertEquals("\0\n", out.tail(2));
+        }
+    }
+
+    /**
+     * Scenario: -j 2 on a 4 GB file in a JVM with a 256 MB heap. Only a few
+     * chunks are buffered at a time, whatever the file size
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "adjusttxt.hugeTests", matches = "true")
+    public void parallelHeapBoundedByChunks() throws Exception {
+        Path file = tempDirectory.resolve("sparse.txt");
+        sparseLines(file, 1L << 20, 4L << 10);
+
+        // Main only needs its own classes, wherever the runner loaded them from
+        Path classes = Path.of(Main.class.getProtectionDomain().getCodeSource()
+                .getLocation().toURI());
+        Path err = tempDirectory.resolve("err.txt");
+        Process process = new ProcessBuilder(
+                Path.of(System.getProperty("java.home"), "bin", "java")
+                        .toString(),
+                "-Xmx256m", "-cp", classes.toString(),
+                Main.class.getName(), "-j", "2", file.toString())
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(err.toFile())
+                .start();
+
+        Assertions.assertTrue(process.waitFor(5, TimeUnit.MINUTES));
+        Assertions.assertEquals("", Files.readString(err));
+        Assertions.assertEquals(0, process.exitValue());
+    }
+}
@@ -0,0 +1,169 @@
+package edu.gatech.seclass.adjusttxt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the LineKernels against the regular expressions they replaced, on
+ * every line of up to MAX_PIECES pieces and on random longer lines. The
+ * pieces cover the whitespace "\s" matches, the line terminators "$" also
+ * matches before, whitespace "\s" does not match, surrogate pairs, unpaired
+ * surrogates and a combining sequence.
+ */
+public class LineKernelsTest {
+    private static final String[] PIECES = {
+            " ", "\t", "\n", "\u000B", "\f", "\r", "\r\n",
+            "\u0085", "\u2028", "\u2029", "\u00A0", "\u3000",
+            "a", "bc", "\uD83D\uDE00", "\uD835\uDC00", "\uD83D", "\uDE00",
+            "e\u0301"};
+
+    // Longest line checked exhaustively, in pieces
+    private static final int MAX_PIECES = 3;
+
+    private static final int RANDOM_LINES = 10_000;
+
+    /* ----------------------------- Test Utilities ----------------------------- */
+
+    /**
+     * @return every line of up to MAX_PIECES pieces, then random lines of
+     *         up to 40 pieces
+     */
+    private static List<String> lines() {
+        List<String> lines = new ArrayList<>();
+        lines.add("");
+        int from = 0;
+        for (int length = 1; length <= MAX_PIECES; length++) {
+            int to = lines.size();
+            for (int i = from; i < to; i++) {
+                for (String piece : PIECES) {
+                    lines.add(lines.get(i) + piece);
+                }
+            }
+            from = to;
+        }
+
+        Random random = new Random(5);
+        for (int i = 0; i < RANDOM_LINES; i++) {
+            StringBuilder line = new StringBuilder();
+            for (int n = random.nextInt(40); n > 0; n--) {
+                line.append(PIECES[random.nextInt(PIECES.length)]);
+            }
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+
+    /**
+     * Runs kernel on line placed in the middle of a LineBuffer, between
+     * chars the kernel must not touch, so start and end are both honoured
+     *
+     * @return the line the kernel leaves
+     */
+    private static String apply(Consumer<LineBuffer> kernel, String line) {
+        LineBuffer buffer = new LineBuffer(0);
+        buffer.set("#" + line + "#");
+        buffer.start = 1;
+        buffer.end = 1 + line.length();
+        kernel.accept(buffer);
+        return buffer.toString();
+    }
+
+    private static void assertSameAsRegex(Consumer<LineBuffer> kernel,
+                                          String regex) {
+        for (String line : lines()) {
+            Assertions.assertEquals(line.replaceAll(regex, ""),
+                    apply(kernel, line), () -> escape(line));
+        }
+    }
+
+    // The -r words implementation LineKernels.reverseWords replaced
+    private static String splitAndReverse(String line) {
+        String[] words = line.split("(?<=\\s)|(?=\\s)");
+        StringBuilder reversed = new StringBuilder();
+        for (int i = words.length - 1; i >= 0; i--) {
+            reversed.append(words[i]);
+        }
+        return reversed.toString();
+    }
+
+    // Line with every char as a \\u escape, for failure messages
+    private static String escape(String line) {
+        StringBuilder escaped = new StringBuilder();
+        for (char c : line.toCharArray()) {
+            escaped.append(String.format("\\u%04X", (int) c));
+        }
+        return escaped.toString();
+    }
+
+    /* ------------------------------- Test Cases ------------------------------- */
+
+    /**
+     * Scenario: -w leading matches line.replaceAll("^\\s+", "")
+     */
+    @Test
+    public void stripLeadingMatchesRegex() {
+        assertSameAsRegex(LineKernels::stripLeading, "^\\s+");
+    }
+
+    /**
+     * Scenario: -w trailing matches line.replaceAll("\\s+$", ""), including
+     * whitespace before a final '\u0085', '\u2028' or '\u2029'
+     */
+    @Test
+    public void stripTrailingMatchesRegex() {
+        assertSameAsRegex(LineKernels::stripTrailing, "\\s+$");
+    }
+
+    /**
+     * Scenario: -w all matches line.replaceAll("\\s+", "")
+     */
+    @Test
+    public void removeAllMatchesRegex() {
+        assertSameAsRegex(LineKernels::removeAll, "\\s+");
+    }
+
+    /**
+     * Scenario: -r words matches splitting on "(?<=\\s)|(?=\\s)" and joining
+     * the pieces in reverse, for runs of mixed whitespace and whitespace
+     * at either end of the line
+     */
+    @Test
+    public void reverseWordsMatchesSplit() {
+        for (String line : lines()) {
+            Assertions.assertEquals(splitAndReverse(line),
+                    apply(LineKernels::reverseWords, line),
+                    () -> escape(line));
+        }
+    }
+
+    /**
+     * Scenario: -r text matches StringBuilder.reverse(). Surrogate pairs stay
+     * in order, unpaired surrogates are reversed like any char, and a low
+     * surrogate followed by a high one becomes a pair. A combining mark
+     * ends up before its base char, as it did before
+     */
+    @Test
+    public void reverseTextMatchesStringBuilder() {
+        for (String line : lines()) {
+            Assertions.assertEquals(new StringBuilder(line).reverse().toString(),
+                    apply(LineKernels::reverseText, line), () -> escape(line));
+        }
+    }
+
+    /**
+     * Scenario: isWhitespace accepts exactly the chars "\s" matches
+     */
+    @Test
+    public void isWhitespaceMatchesRegex() {
+        for (char c = 0; c < Character.MAX_VALUE; c++) {
+            String text = String.valueOf(c);
+            Assertions.assertEquals(text.matches("\\s"),
+                    LineKernels.isWhitespace(c), () -> escape(text));
+        }
+    }
+}
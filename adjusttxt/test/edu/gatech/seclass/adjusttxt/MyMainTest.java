@@ -1,8 +1,32 @@
 package edu.gatech.seclass.adjusttxt;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -14,7 +38,9 @@ import org.junit.jupiter.api.io.TempDir;
 public class MyMainTest {
     // Place all of your tests in this class, optionally using MainTest.java as an example
     private final String usageStr =
-            "Usage: adjusttxt [ -s number | -w spacing | -x | -r target | -p prefix ] FILE"
+            "Usage: adjusttxt [ --client socket ] [ -s number | -w spacing | -x | -r target | -p prefix | -j threads | -d outdir | -o file | --in-place | --charset name | --stats ] FILE..."
+                    + System.lineSeparator()
+                    + "       adjusttxt --daemon socket"
                     + System.lineSeparator();
 
     @TempDir Path tempDirectory;
@@ -576,6 +602,821 @@ public class MyMainTest {
         Assertions.assertEquals(input, getFileContent(inputFile));
     }
 
+    /**
+     * Custom Test Case 20
+     *    Scenario: -s with parallel processing matches sequential output
+     */
+    @Test
+    public void customTest20() {
+        String input = multipleLines;
+        String expected = multipleLinesEven;
+
+        Path inputFile = createFile(input);
+        String[] args = {"-j", "4", "-s", "0", inputFile.toString()};
+        Main.main(args);
+
+        Assertions.assertEquals(expected, capture.stdout());
+        Assertions.assertTrue(capture.stderr().isEmpty());
+        Assertions.assertEquals(input, getFileContent(inputFile));
+    }
+
+    /**
+     * Custom Test Case 21 		<error>
+     *    Scenario: -j with fewer than one thread
+     */
+    @Test
+    public void customTest21() {
+        String input = multipleLines;
+
+        Path inputFile = createFile(input);
+        String[] args = {"-j", "0", inputFile.toString()};
+        Main.main(args);
+
+        Assertions.assertTrue(capture.stdout().isEmpty());
+        Assertions.assertEquals(usageStr, capture.stderr());
+        Assertions.assertEquals(input, getFileContent(inputFile));
+    }
+
+    /**
+     * Custom Test Case 22
+     *    Scenario: "-" reads the file from stdin
+     */
+    @Test
+    public void customTest22() {
+        String input = singleLine;
+        String expected = singleLineReversedWords;
+
+        InputStream originalIn = System.in;
+        try {
+            System.setIn(new ByteArrayInputStream(input.getBytes()));
+            String[] args = {"-r", "words", "-"};
+            Main.main(args);
+        } finally {
+            System.setIn(originalIn);
+        }
+
+        Assertions.assertEquals(expected, capture.stdout());
+        Assertions.assertTrue(capture.stderr().isEmpty());
+    }
+
+    /**
+     * Custom Test Case 23 		<error>
+     *    Scenario: stdin does not end with newline
+     */
+    @Test
+    public void customTest23() {
+        String input = "test";
+
+        InputStream originalIn = System.in;
+        try {
+            System.setIn(new ByteArrayInputStream(input.getBytes()));
+            String[] args = {"-"};
+            Main.main(args);
+        } finally {
+            System.setIn(originalIn);
+        }
+
+        Assertions.assertTrue(capture.stdout().isEmpty());
+        Assertions.assertEquals(usageStr, capture.stderr());
+    }
+
+    /**
+     * Custom Test Case 24
+     *    Scenario: several files are output in argument order
+     */
+    @Test
+    public void customTest24() {
+        String input1 = singleLine;
+        String input2 = multipleLines;
+        String expected = singleLine + multipleLines;
+
+        Path inputFile1 = createFile(input1, "input1.txt");
+        Path inputFile2 = createFile(input2, "input2.txt");
+        String[] args = {"-j", "2", inputFile1.toString(), inputFile2.toString()};
+        Main.main(args);
+
+        Assertions.assertEquals(expected, capture.stdout());
+        Assertions.assertTrue(capture.stderr().isEmpty());
+        Assertions.assertEquals(input1, getFileContent(inputFile1));
+        Assertions.assertEquals(input2, getFileContent(inputFile2));
+    }
+
+    /**
+     * Custom Test Case 25 		<error>
+     *    Scenario: one of several files does not end with newline
+     */
+    @Test
+    public void customTest25() {
+        String input1 = "test";
+        String input2 = singleLine;
+        String expected = singleLine;
+
+        Path inputFile1 = createFile(input1, "input1.txt");
+        Path inputFile2 = createFile(input2, "input2.txt");
+        String[] args = {inputFile1.toString(), inputFile2.toString()};
+        Main.main(args);
+
+        Assertions.assertEquals(expected, capture.stdout());
+        Assertions.assertTrue(capture.stderr().startsWith(
+                "adjusttxt: " + inputFile1 + ": "));
+        Assertions.assertEquals(input1, getFileContent(inputFile1));
+    }
+
+    /**
+     * Custom Test Case 26
+     *    Scenario: -d mirrors a directory tree into the output directory
+     */
+    @Test
+    public void customTest26() throws IOException {
+        String input1 = singleLine;
+        String input2 = multipleLines;
+        String expected1 = singleLineWAll;
+
+        Files.createDirectories(tempDirectory.resolve("in/nested"));
+        Path inputFile1 = createFile(input1, "in/input1.txt");
+        Path inputFile2 = createFile(input2, "in/nested/input2.txt");
+        Path outputDir = tempDirectory.resolve("out");
+        String[] args = {"-w", "all", "-d", outputDir.toString(),
+                tempDirectory.resolve("in").toString()};
+        Main.main(args);
+
+        Assertions.assertTrue(capture.stdout().isEmpty());
+        Assertions.assertTrue(capture.stderr().startsWith("adjusttxt: 2 files"));
+        Assertions.assertEquals(expected1,
+                getFileContent(outputDir.resolve("input1.txt")));
+        Assertions.assertTrue(Files.exists(outputDir.resolve("nested/input2.txt")));
+        Assertions.assertEquals(input1, getFileContent(inputFile1));
+        Assertions.assertEquals(input2, getFileContent(inputFile2));
+    }
+
+    /**
+     * Custom Test Case 27
+     *    Scenario: -o writes the output to a file instead of stdout
+     */
+    @Test
+    public void customTest27() {
+        String input = singleLine;
+        String expected = singleLineReversedText;
+
+        Path inputFile = createFile(input);
+        Path outputFile = tempDirectory.resolve("output.txt");
+        String[] args = {"-r", "text", "-o", outputFile.toString(),
+                inputFile.toString()};
+        Main.main(args);
+
+        Assertions.assertTrue(capture.stdout().isEmpty());
+        Assertions.assertTrue(capture.stderr().isEmpty());
+        Assertions.assertEquals(expected, getFileContent(outputFile));
+        Assertions.assertEquals(input, getFileContent(inputFile));
+    }
+
+    /**
+     * Custom Test Case 28
+     *    Scenario: --in-place replaces the file with its output
+     */
+    @Test
+    public void customTest28() {
+        String input = singleLine;
+        String expected = singleLineWAll;
+
+        Path inputFile = createFile(input);
+        String[] args = {"-w", "all", "--in-place", inputFile.toString()};
+        Main.main(args);
+
+        Assertions.assertTrue(capture.stdout().isEmpty());
+        Assertions.assertTrue(capture.stderr().isEmpty());
+        Assertions.assertEquals(expected, getFileContent(inputFile));
+    }
+
+    /**
+     * Custom Test Case 29 		<error>
+     *    Scenario: --in-place on a file that does not end with newline
+     */
+    @Test
+    public void customTest29() {
+        String input = "test";
+
+        Path inputFile = createFile(input);
+        String[] args = {"-w", "all", "--in-place", inputFile.toString()};
+        Main.main(args);
+
+        Assertions.assertTrue(capture.stdout().isEmpty());
+        Assertions.assertEquals(usageStr, capture.stderr());
+        Assertions.assertEquals(input, getFileContent(inputFile));
+    }
+
+    /**
+     * Custom Test Case 30
+     *    Scenario: --charset decodes the file with the given charset
+     */
+    @Test
+    public void customTest30() throws IOException {
+        byte[] input = (" \u00e9 a" + System.lineSeparator())
+                .getBytes(StandardCharsets.ISO_8859_1);
+        Charset stdout = Charset.defaultCharset();
+        String expected = new String("\u00e9a".getBytes(stdout), stdout)
+                + System.lineSeparator();
+
+        Path inputFile = Files.write(tempDirectory.resolve("latin1.txt"), input);
+        String[] args = {"--charset", "ISO-8859-1", "-w", "all",
+                inputFile.toString()};
+        Main.main(args);
+
+        Assertions.assertEquals(expected, capture.stdout());
+        Assertions.assertTrue(capture.stderr().isEmpty());
+    }
+
+    /**
+     * Custom Test Case 31 		<error>
+     *    Scenario: --charset with an unknown charset
+     */
+    @Test
+    public void customTest31() {
+        String input = singleLine;
+
+        Path inputFile = createFile(input);
+        String[] args = {"--charset", "no-such-charset", inputFile.toString()};
+        Main.main(args);
+
+        Assertions.assertTrue(capture.stdout().isEmpty());
+        Assertions.assertEquals(usageStr, capture.stderr());
+        Assertions.assertEquals(input, getFileContent(inputFile));
+    }
+
+    /**
+     * Custom Test Case 32
+     *    Scenario: each line keeps its own "\n" or "\r\n" terminator
+     */
+    @Test
+    public void customTest32() {
+        String input = "a b\r\nc\rd\n";
+        String expected = ">b a\r\n>d\rc\n";
+
+        Path inputFile = createFile(input);
+        String[] args = {"-r", "words", "-p", ">", inputFile.toString()};
+        Main.main(args);
+
+        Assertions.assertEquals(expected, capture.stdout());
+        Assertions.assertTrue(capture.stderr().isEmpty());
+        Assertions.assertEquals(input, getFileContent(inputFile));
+    }
+
+    /**
+     * Custom Test Case 33 		<error>
+     *    Scenario: file ends with a lone "\r"
+     */
+    @Test
+    public void customTest33() {
+        String input = "test\r";
+
+        Path inputFile = createFile(input);
+        String[] args = {inputFile.toString()};
+        Main.main(args);
+
+        Assertions.assertTrue(capture.stdout().isEmpty());
+        Assertions.assertEquals(usageStr, capture.stderr());
+        Assertions.assertEquals(input, getFileContent(inputFile));
+    }
+
+    /**
+     * Custom Test Case 34
+     *    Scenario: --stats prints a summary to stderr and leaves stdout as is
+     */
+    @Test
+    public void customTest34() {
+        String input = singleLine + singleLine;
+        String expected = singleLineWAll;
+        int bytes = input.getBytes().length;
+
+        Path inputFile = createFile(input);
+        String[] args = {"--stats", "-s", "0", "-w", "all",
+                inputFile.toString()};
+        Main.main(args);
+
+        Assertions.assertEquals(expected, capture.stdout());
+        Assertions.assertTrue(capture.stderr().startsWith(
+                "adjusttxt: lines: 2 read, 1 skipped, 1 written"
+                        + System.lineSeparator()
+                        + "adjusttxt: bytes: " + bytes + " in, "
+                        + expected.getBytes().length + " out"));
+        Assertions.assertTrue(capture.stderr().contains(
+                "adjusttxt: stage processSpacing: "));
+        Assertions.assertEquals(input, getFileContent(inputFile));
+    }
+
+    /**
+     * Custom Test Case 35
+     *    Scenario: a listener on AdjustTxt receives progress and final counts,
+     *    then the error of a failing call
+     */
+    @Test
+    public void customTest35() {
+        String input = singleLine + singleLine;
+        List<AdjustTxtMetrics> progress = new ArrayList<>();
+        List<AdjustTxtMetrics> completed = new ArrayList<>();
+        List<AdjustTxtException> errors = new ArrayList<>();
+
+        Path inputFile = createFile(input);
+        AdjustTxt adjustTxt = new AdjustTxt();
+        adjustTxt.setFilepath(inputFile.toString());
+        adjustTxt.setLineToSkip(AdjustTxtInterface.LineToSkip.even);
+        adjustTxt.setListener(new AdjustTxtListener() {
+            @Override
+            public void onProgress(AdjustTxtMetrics metrics) {
+                progress.add(metrics);
+            }
+
+            @Override
+            public void onComplete(AdjustTxtMetrics metrics) {
+                completed.add(metrics);
+            }
+
+            @Override
+            public void onError(AdjustTxtMetrics metrics, AdjustTxtException error) {
+                errors.add(error);
+            }
+        });
+        Assertions.assertDoesNotThrow(() -> adjustTxt.adjusttxt());
+
+        Assertions.assertEquals(singleLine, capture.stdout());
+        Assertions.assertFalse(progress.isEmpty());
+        Assertions.assertEquals(1, completed.size());
+        AdjustTxtMetrics metrics = completed.get(0);
+        Assertions.assertEquals(2, metrics.getLinesRead());
+        Assertions.assertEquals(1, metrics.getLinesSkipped());
+        Assertions.assertEquals(1, metrics.getLinesWritten());
+        Assertions.assertEquals(input.getBytes().length, metrics.getBytesIn());
+        Assertions.assertEquals(singleLine.getBytes().length, metrics.getBytesOut());
+        Assertions.assertTrue(metrics.getStageNanos().containsKey("skipLine"));
+
+        adjustTxt.setFilepath(tempDirectory.resolve("missing.txt").toString());
+        Assertions.assertThrows(AdjustTxtException.class, () -> adjustTxt.adjusttxt());
+        Assertions.assertEquals(1, completed.size());
+        Assertions.assertEquals(1, errors.size());
+    }
+
+    /**
+     * Custom Test Case 36
+     *    Scenario: adjusttxt(Writer), adjusttxt(OutputStream) and
+     *    adjusttxt(WritableByteChannel) stream into the given sink, not stdout
+     */
+    @Test
+    public void customTest36() throws IOException {
+        String input = singleLine;
+        String expected = singleLineWAll;
+
+        Path inputFile = createFile(input);
+        AdjustTxt adjustTxt = new AdjustTxt();
+        adjustTxt.setFilepath(inputFile.toString());
+        adjustTxt.setRemoveSpaces(AdjustTxtInterface.RemoveSpaces.all);
+
+        StringWriter writer = new StringWriter();
+        Assertions.assertDoesNotThrow(() -> adjustTxt.adjusttxt(writer));
+        Assertions.assertEquals(expected, writer.toString());
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        Assertions.assertDoesNotThrow(() -> adjustTxt.adjusttxt(stream));
+        Assertions.assertEquals(expected, stream.toString());
+
+        Path outputFile = tempDirectory.resolve("output.txt");
+        try (FileChannel channel = FileChannel.open(outputFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            Assertions.assertDoesNotThrow(() -> adjustTxt.adjusttxt(channel));
+        }
+        Assertions.assertEquals(expected, getFileContent(outputFile));
+
+        Assertions.assertThrows(AdjustTxtException.class,
+                () -> adjustTxt.adjusttxt((Writer) null));
+        Assertions.assertTrue(capture.stdout().isEmpty());
+        Assertions.assertTrue(capture.stderr().isEmpty());
+    }
+
+    /**
+     * Custom Test Case 37
+     *    Scenario: one compiled AdjustTxtProgram is run by several threads at
+     *    once, each on its own file and sink
+     */
+    @Test
+    public void customTest37() throws Exception {
+        Assertions.assertThrows(AdjustTxtException.class,
+                () -> AdjustTxtConfig.builder()
+                        .removeEmptyLines(true)
+                        .removeSpaces(AdjustTxtInterface.RemoveSpaces.all)
+                        .build());
+        Assertions.assertThrows(AdjustTxtException.class,
+                () -> AdjustTxtConfig.builder().prefix("").build());
+
+        AdjustTxtProgram program = AdjustTxtConfig.builder()
+                .removeSpaces(AdjustTxtInterface.RemoveSpaces.all)
+                .prefix("#")
+                .build()
+                .compile();
+
+        int threads = 4;
+        List<Path> inputs = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            StringBuilder input = new StringBuilder();
+            StringBuilder output = new StringBuilder();
+            for (int line = 0; line < 2000; line++) {
+                input.append(" file ").append(i).append(" line ").append(line)
+                        .append(System.lineSeparator());
+                output.append("#file").append(i).append("line").append(line)
+                        .append(System.lineSeparator());
+            }
+            Path inputFile = tempDirectory.resolve("input" + i + ".txt");
+            Files.writeString(inputFile, input.toString());
+            inputs.add(inputFile);
+            expected.add(output.toString());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (Path input : inputs) {
+                results.add(executor.submit(() -> {
+                    StringWriter writer = new StringWriter();
+                    program.run(input.toString(), writer);
+                    return writer.toString();
+                }));
+            }
+            for (int i = 0; i < threads; i++) {
+                Assertions.assertEquals(expected.get(i), results.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Assertions.assertThrows(AdjustTxtException.class, () -> program.run(
+                tempDirectory.resolve("missing.txt").toString(), new StringWriter()));
+        Assertions.assertTrue(capture.stdout().isEmpty());
+        Assertions.assertTrue(capture.stderr().isEmpty());
+    }
+
+    /**
+     * Custom Test Case 38
+     *    Scenario: --client forwards the run to a --daemon on a Unix domain
+     *    socket, and runs it locally once no daemon listens
+     */
+    @Test
+    public void customTest38() throws Exception {
+        String input = singleLine;
+        String expected = singleLineWAll;
+
+        Path inputFile = createFile(input);
+        Path socket = tempDirectory.resolve("adjusttxt.sock");
+        String[] args = {"--client", socket.toString(), "-w", "all",
+                inputFile.toString()};
+
+        Daemon daemon = Daemon.bind(socket);
+        Thread server = new Thread(() -> {
+            try {
+                daemon.serve();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        server.start();
+        try {
+            Main.main(args);
+            Assertions.assertEquals(expected, capture.stdout());
+            Assertions.assertTrue(capture.stderr().isEmpty());
+
+            Main.main(new String[] {"--client", socket.toString(), "-x",
+                    "-w", "all", inputFile.toString()});
+            Assertions.assertEquals(expected, capture.stdout());
+            Assertions.assertEquals(usageStr, capture.stderr());
+        } finally {
+            daemon.close();
+            server.join();
+        }
+
+        Main.main(args);
+        Assertions.assertEquals(expected + expected, capture.stdout());
+        Assertions.assertEquals(input, getFileContent(inputFile));
+    }
+
+    /**
+     * Custom Test Case 39 		<error>
+     *    Scenario: stdin without a trailing newline after many lines. Every
+     *    complete line is written before the error, and nothing after it
+     */
+    @Test
+    public void customTest39() {
+        StringBuilder lines = new StringBuilder();
+        for (int line = 0; line < 3000; line++) {
+            lines.append("line ").append(line).append('\n');
+            if (line == 1000) {
+                lines.append("x".repeat(1 << 20)).append('\n');
+            }
+        }
+        String expected = lines.toString();
+
+        InputStream originalIn = System.in;
+        try {
+            System.setIn(new ByteArrayInputStream(
+                    (expected + "last").getBytes()));
+            String[] args = {"-"};
+            Main.main(args);
+        } finally {
+            System.setIn(originalIn);
+        }
+
+        Assertions.assertEquals(expected, capture.stdout());
+        Assertions.assertEquals(usageStr, capture.stderr());
+    }
+
+    /**
+     * Custom Test Case 40
+     *    Scenario: a new -o file gets the default mode for new files, and
+     *    --in-place on a symlink replaces the file it points to
+     */
+    @Test
+    public void customTest40() throws IOException {
+        String input = singleLine;
+        String expected = singleLineWAll;
+
+        Path inputFile = createFile(input);
+        Path outputFile = tempDirectory.resolve("output.txt");
+        String[] args = {"-w", "all", "-o", outputFile.toString(),
+                inputFile.toString()};
+        Main.main(args);
+
+        Path newFile = Files.createFile(tempDirectory.resolve("new.txt"));
+        Assertions.assertEquals(Files.getPosixFilePermissions(newFile),
+                Files.getPosixFilePermissions(outputFile));
+
+        Path link = Files.createSymbolicLink(tempDirectory.resolve("link.txt"),
+                inputFile);
+        Main.main(new String[] {"-w", "all", "--in-place", link.toString()});
+
+        Assertions.assertTrue(Files.isSymbolicLink(link));
+        Assertions.assertEquals(expected, getFileContent(inputFile));
+        Assertions.assertEquals(expected, getFileContent(outputFile));
+        Assertions.assertTrue(capture.stdout().isEmpty());
+        Assertions.assertTrue(capture.stderr().isEmpty());
+    }
+
+    /**
+     * Custom Test Case 41 		<error>
+     *    Scenario: --in-place on several files, one of which does not end
+     *    with newline. It is reported and left untouched, and the files
+     *    around it are still replaced
+     */
+    @Test
+    public void customTest41() {
+        String input = singleLine;
+        String expected = singleLineWAll;
+        String bad = "test";
+
+        Path inputFile1 = createFile(input, "input1.txt");
+        Path badFile = createFile(bad, "bad.txt");
+        Path inputFile2 = createFile(input, "input2.txt");
+        String[] args = {"-w", "all", "--in-place", inputFile1.toString(),
+                badFile.toString(), inputFile2.toString()};
+        Main.main(args);
+
+        Assertions.assertTrue(capture.stdout().isEmpty());
+        Assertions.assertEquals("adjusttxt: " + badFile
+                        + ": File does not end with newline"
+                        + System.lineSeparator(),
+                capture.stderr());
+        Assertions.assertEquals(expected, getFileContent(inputFile1));
+        Assertions.assertEquals(bad, getFileContent(badFile));
+        Assertions.assertEquals(expected, getFileContent(inputFile2));
+    }
+
+    /**
+     * Custom Test Case 42
+     *    Scenario: a request with a huge argument count is dropped without
+     *    the daemon allocating for it, and a command line with an argument
+     *    over the 64 KB request limit runs in the client. The daemon keeps
+     *    serving afterwards
+     */
+    @Test
+    public void customTest42() throws Exception {
+        String prefix = "p".repeat(70_000);
+        String input = singleLine;
+
+        Path inputFile = createFile(input);
+        Path socket = tempDirectory.resolve("adjusttxt.sock");
+
+        Daemon daemon = Daemon.bind(socket);
+        Thread server = new Thread(() -> {
+            try {
+                daemon.serve();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        server.start();
+        try {
+            try (SocketChannel client = SocketChannel.open(
+                    UnixDomainSocketAddress.of(socket))) {
+                DataOutputStream request = new DataOutputStream(
+                        Channels.newOutputStream(client));
+                request.writeUTF(tempDirectory.toString());
+                request.writeInt(Daemon.MAX_ARGS + 1);
+                request.flush();
+                Assertions.assertEquals(-1,
+                        Channels.newInputStream(client).read());
+            }
+
+            Main.main(new String[] {"--client", socket.toString(), "-p",
+                    prefix, inputFile.toString()});
+            Assertions.assertEquals(prefix + input, capture.stdout());
+            Assertions.assertTrue(capture.stderr().isEmpty());
+
+            Main.main(new String[] {"--client", socket.toString(), "-w", "all",
+                    inputFile.toString()});
+            Assertions.assertEquals(prefix + input + singleLineWAll,
+                    capture.stdout());
+            Assertions.assertTrue(capture.stderr().isEmpty());
+        } finally {
+            daemon.close();
+            server.join();
+        }
+    }
+
+    /**
+     * Custom Test Case 43
+     *    Scenario: stdin with a --charset that cannot be scanned as bytes is
+     *    decoded before scanning, like the same file passed by path
+     */
+    @Test
+    public void customTest43() {
+        String input = singleLine + "  \u00e9 b" + System.lineSeparator();
+        Charset stdout = Charset.defaultCharset();
+        String expected = singleLineWAll
+                + new String("\u00e9b".getBytes(stdout), stdout)
+                + System.lineSeparator();
+
+        InputStream originalIn = System.in;
+        try {
+            System.setIn(new ByteArrayInputStream(
+                    input.getBytes(StandardCharsets.UTF_16)));
+            String[] args = {"--charset", "UTF-16", "-w", "all", "-"};
+            Main.main(args);
+        } finally {
+            System.setIn(originalIn);
+        }
+
+        Assertions.assertEquals(expected, capture.stdout());
+        Assertions.assertTrue(capture.stderr().isEmpty());
+    }
+
+    /**
+     * Custom Test Case 44
+     *    Scenario: the reader of stdout goes away, as with adjusttxt FILE |
+     *    head. The run stops at the next block instead of adjusting the
+     *    rest of the file, and no error is reported
+     */
+    @Test
+    public void customTest44() {
+        String input = singleLine.repeat(200_000);
+        Path inputFile = createFile(input);
+
+        int[] writes = new int[1];
+        PrintStream closedPipe = new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                writes[0]++;
+                throw new IOException("Broken pipe");
+            }
+        });
+
+        String[] args = {"-w", "all", inputFile.toString()};
+        Main.run(args, null, closedPipe, System.err);
+
+        // The failed block, and the final flush of what was left buffered
+        Assertions.assertTrue(writes[0] <= 2, writes[0] + " writes");
+        Assertions.assertTrue(capture.stdout().isEmpty());
+        Assertions.assertTrue(capture.stderr().isEmpty());
+    }
+
+    /**
+     * Custom Test Case 45
+     *    Scenario: the daemon socket is private from the start, a client
+     *    that sends nothing is dropped after the request timeout, a request
+     *    over MAX_REQUEST_BYTES is dropped, and the client runs such a
+     *    command line itself
+     */
+    @Test
+    public void customTest45() throws Exception {
+        String[] huge = new String[40];
+        Arrays.fill(huge, "a".repeat(60_000));
+
+        Path socket = tempDirectory.resolve("adjusttxt.sock");
+        Daemon daemon = Daemon.bind(socket, Duration.ofMillis(200));
+        Thread server = new Thread(() -> {
+            try {
+                daemon.serve();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        server.start();
+        try {
+            Assertions.assertEquals("rw-------", PosixFilePermissions.toString(
+                    Files.getPosixFilePermissions(socket)));
+            try (var entries = Files.list(tempDirectory)) {
+                Assertions.assertEquals(List.of(socket), entries.toList());
+            }
+
+            try (SocketChannel client = SocketChannel.open(
+                    UnixDomainSocketAddress.of(socket))) {
+                Assertions.assertEquals(-1,
+                        Channels.newInputStream(client).read());
+            }
+
+            try (SocketChannel client = SocketChannel.open(
+                    UnixDomainSocketAddress.of(socket))) {
+                DataOutputStream request = new DataOutputStream(
+                        Channels.newOutputStream(client));
+                try {
+                    request.writeUTF(tempDirectory.toString());
+                    request.writeInt(huge.length);
+                    for (String arg : huge) {
+                        request.writeUTF(arg);
+                    }
+                    request.flush();
+                    // Case: closed with the request unread, which resets the
+                    // connection
+                    Assertions.assertThrows(IOException.class,
+                            () -> Channels.newInputStream(client).read());
+                } catch (IOException e) {
+                    // Case: daemon closed the connection mid-request
+                }
+            }
+
+            Assertions.assertFalse(Daemon.forward(socket, huge, System.out,
+                    System.err));
+        } finally {
+            daemon.close();
+            server.join();
+        }
+    }
+
+    /**
+     * Custom Test Case 46
+     *    Scenario: stdin among several files with -j. It is streamed in its
+     *    place in argument order, between the buffered files
+     */
+    @Test
+    public void customTest46() throws IOException {
+        String input = singleLine;
+        String stdin = "  from stdin  " + System.lineSeparator();
+
+        Path first = createFile(input, "first.txt");
+        Path last = createFile(input + input, "last.txt");
+
+        InputStream originalIn = System.in;
+        try {
+            System.setIn(new ByteArrayInputStream(stdin.getBytes()));
+            String[] args = {"-j", "2", "-p", ">", first.toString(), "-",
+                    last.toString()};
+            Main.main(args);
+        } finally {
+            System.setIn(originalIn);
+        }
+
+        Assertions.assertEquals(">" + input + ">" + stdin + ">" + input + ">"
+                + input, capture.stdout());
+        Assertions.assertTrue(capture.stderr().isEmpty());
+    }
+
+    /**
+     * Custom Test Case 47
+     *    Scenario: "-" given twice, with a file in between. Stdin can only
+     *    be read once, so the command line is rejected as such before any
+     *    output, instead of the second "-" being looked up as a file
+     */
+    @Test
+    public void customTest47() {
+        Path inputFile = createFile(singleLine);
+        String[] args = {"-w", "all", "-", inputFile.toString(), "-"};
+
+        IllegalArgumentException e = Assertions.assertThrows(
+                IllegalArgumentException.class, () -> new ParseArgs(args));
+        Assertions.assertEquals("Stdin given more than once", e.getMessage());
+
+        InputStream originalIn = System.in;
+        try {
+            System.setIn(new ByteArrayInputStream(singleLine.getBytes()));
+            Main.main(args);
+        } finally {
+            System.setIn(originalIn);
+        }
+
+        Assertions.assertTrue(capture.stdout().isEmpty());
+        Assertions.assertEquals(usageStr, capture.stderr());
+    }
+
     /**
      * Test Case 1  		<error>
      *    File included (as last param) :  No
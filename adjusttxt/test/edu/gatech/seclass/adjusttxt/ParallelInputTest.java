@@ -0,0 +1,154 @@
+package edu.gatech.seclass.adjusttxt;
+
+import edu.gatech.seclass.adjusttxt.AdjustTxtInterface.LineToSkip;
+import edu.gatech.seclass.adjusttxt.AdjustTxtInterface.RemoveSpaces;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that -j output is identical to a sequential run when a small file
+ * is split into many chunks, so the prefix-sum line numbers and chunk edges
+ * are covered without multi-MB inputs
+ */
+public class ParallelInputTest {
+    @TempDir Path tempDirectory;
+
+    private static final Charset CHARSET = StandardCharsets.UTF_8;
+
+    // LF and CRLF lines of varying length, a lone "\r", an empty line and
+    // non-ASCII text
+    private static final String INPUT = "first line\n"
+            + "  second\r\n"
+            + "3\n"
+            + "\r\n"
+            + "a lone \r inside\n"
+            + "\n"
+            + "café über\r\n"
+            + "x\r\n"
+            + "the longest line of them all, spanning several chunks\n"
+            + "y\n"
+            + "z\r\n";
+
+    /* ----------------------------- Test Utilities ----------------------------- */
+
+    private Path createFile(String content) throws IOException {
+        Path file = Files.createTempFile(this.tempDirectory, "input", ".txt");
+        Files.writeString(file, content, CHARSET);
+        return file;
+    }
+
+    private static String sequential(Path file, LinePipeline pipeline)
+            throws IOException {
+        StringWriter out = new StringWriter();
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            MappedInput.run(channel, 0, channel.size(), 1, CHARSET, pipeline,
+                    out);
+        }
+        return out.toString();
+    }
+
+    private static String parallel(Path file, LinePipeline pipeline,
+                                   long chunkSize) throws IOException {
+        StringWriter out = new StringWriter();
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            ParallelInput.run(channel, channel.size(), CHARSET, pipeline, 3,
+                    out, chunkSize);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Compares the parallel output with the sequential one for every chunk
+     * size up to the longest line, so chunk edges fall on every byte,
+     * including between the "\r" and "\n" of each CRLF
+     */
+    private void assertSameAsSequential(LinePipeline pipeline)
+            throws IOException {
+        Path file = createFile(INPUT);
+        String expected = sequential(file, pipeline);
+
+        for (long chunkSize = 1; chunkSize <= 60; chunkSize++) {
+            Assertions.assertEquals(expected,
+                    parallel(file, pipeline, chunkSize),
+                    "chunk size " + chunkSize);
+        }
+    }
+
+    /* ------------------------------- Test Cases ------------------------------- */
+
+    /**
+     * Scenario: chunks start after a "\n", never between "\r" and "\n"
+     */
+    @Test
+    public void splitOnLineStarts() throws IOException {
+        Path file = createFile(INPUT);
+        byte[] bytes = INPUT.getBytes(CHARSET);
+
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            for (long chunkSize = 1; chunkSize <= 60; chunkSize++) {
+                long[] bounds = ParallelInput.split(channel, bytes.length,
+                        chunkSize);
+                Assertions.assertEquals(0, bounds[0]);
+                Assertions.assertEquals(bytes.length,
+                        bounds[bounds.length - 1]);
+                for (int i = 1; i < bounds.length - 1; i++) {
+                    Assertions.assertEquals('\n', bytes[(int) bounds[i] - 1]);
+                }
+            }
+
+            Assertions.assertTrue(ParallelInput.split(channel, bytes.length,
+                    8).length > 3);
+        }
+    }
+
+    /**
+     * Scenario: -s 0 across many chunks
+     */
+    @Test
+    public void skipEvenLines() throws IOException {
+        assertSameAsSequential(LinePipeline.compile(LineToSkip.even, null,
+                false, null, null, CHARSET));
+    }
+
+    /**
+     * Scenario: -s 1 across many chunks
+     */
+    @Test
+    public void skipOddLines() throws IOException {
+        assertSameAsSequential(LinePipeline.compile(LineToSkip.odd, null,
+                false, null, null, CHARSET));
+    }
+
+    /**
+     * Scenario: -s 1 -x -w trailing -p, so line numbers, dropped lines and
+     * edited lines all cross chunk edges
+     */
+    @Test
+    public void skipWithOtherOptions() throws IOException {
+        assertSameAsSequential(LinePipeline.compile(LineToSkip.odd,
+                RemoveSpaces.trailing, true, null, ">", CHARSET));
+    }
+
+    /**
+     * Scenario: no option uses line numbers, so no prefix sum is taken
+     */
+    @Test
+    public void noLineNumbers() throws IOException {
+        assertSameAsSequential(LinePipeline.compile(null, RemoveSpaces.all,
+                false, null, null, CHARSET));
+    }
+}
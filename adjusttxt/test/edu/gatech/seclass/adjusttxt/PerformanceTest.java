@@ -0,0 +1,257 @@
+package edu.gatech.seclass.adjusttxt;
+
+import edu.gatech.seclass.adjusttxt.AdjustTxtInterface.LineToSkip;
+import edu.gatech.seclass.adjusttxt.AdjustTxtInterface.RemoveSpaces;
+import edu.gatech.seclass.adjusttxt.AdjustTxtInterface.ReverseLine;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Runs the main option combinations on generated inputs of several MB and
+ * fails on a regression in allocation or throughput. MyMainTest only checks
+ * output on tiny inputs, so a stage that turns quadratic would still pass it.
+ *
+ * <p>For every combination three things are checked:
+ * <ul>
+ *     <li>bytes allocated per line on the running thread, against the
+ *     baseline in performance-baselines.properties</li>
+ *     <li>the time for a file of long lines against one of short lines of
+ *     the same size. This does not depend on the machine, and catches work
+ *     that grows faster than the length of a line</li>
+ *     <li>MB/s, against the baseline in the same file. This depends on the
+ *     machine and on its load, so it only runs with
+ *     -Dadjusttxt.perfTests=true, on the machine the baselines were
+ *     recorded on</li>
+ * </ul>
+ *
+ * <p>A result may be worse than its baseline by the tolerance
+ * (-Dadjusttxt.perf.tolerance, 0.5 by default) before the test fails.
+ * After a deliberate change, or on a new build machine, rerun with
+ * -Dadjusttxt.perfTests=true -Dadjusttxt.perf.record=FILE to write the
+ * measured values to FILE and check that in as the new baselines.
+ */
+public class PerformanceTest {
+    private static final long SEED = 42;
+    private static final long FILE_SIZE = 8L << 20;
+    private static final int SHORT_LINE = 64;
+    private static final int LONG_LINE = 4096;
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 3;
+
+    // Allocation below this many bytes per line is noise
+    private static final double ALLOCATION_SLACK = 8;
+    private static final double LONG_LINE_RATIO = 2.5;
+
+    private static final double TOLERANCE = Double.parseDouble(
+            System.getProperty("adjusttxt.perf.tolerance", "0.5"));
+    private static final String RECORD =
+            System.getProperty("adjusttxt.perf.record");
+
+    @TempDir static Path tempDirectory;
+
+    private static Path shortLines;
+    private static Path longLines;
+    private static long lineCount;
+    private static Properties baselines;
+    private static final TreeMap<String, String> recorded = new TreeMap<>();
+
+    /* ----------------------------- Test Utilities ----------------------------- */
+
+    /**
+     * Result of running one file through a pipeline
+     */
+    private static class Measurement {
+        long nanos = Long.MAX_VALUE;
+        long allocatedBytes;
+    }
+
+    /**
+     * Writes generated lines of the given mean length until the file reaches
+     * FILE_SIZE, and returns the number of lines
+     */
+    private static long generate(Path file, int lineLength) throws IOException {
+        CorpusGenerator.Shape shape = new CorpusGenerator.Shape(0, lineLength,
+                4, 0.1);
+        Random random = new Random(SEED);
+        StringBuilder line = new StringBuilder();
+        long size = 0;
+        long lines = 0;
+
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            while (size < FILE_SIZE) {
+                line.setLength(0);
+                CorpusGenerator.appendLine(random, shape, line);
+                line.append('\n');
+                out.append(line);
+                size += line.length();
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Runs file through pipeline on this thread, and keeps the fastest of
+     * the measured runs and the allocation of the last one
+     */
+    private static Measurement measure(LinePipeline pipeline, Path file)
+            throws IOException {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Measurement measurement = new Measurement();
+
+        for (int i = 0; i < WARMUP_RUNS + MEASURED_RUNS; i++) {
+            Writer out = new BufferedWriter(new OutputStreamWriter(
+                    OutputStream.nullOutputStream()), 1 << 16);
+            long allocated = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            pipeline.run(file.toFile(), 1, out);
+            out.flush();
+            long nanos = System.nanoTime() - start;
+
+            if (i >= WARMUP_RUNS) {
+                measurement.nanos = Math.min(measurement.nanos, nanos);
+                measurement.allocatedBytes =
+                        threads.getCurrentThreadAllocatedBytes() - allocated;
+            }
+        }
+        return measurement;
+    }
+
+    private static double baseline(String key) {
+        String value = baselines.getProperty(key);
+        Assertions.assertNotNull(value, "No baseline for " + key);
+        return Double.parseDouble(value);
+    }
+
+    static Stream<Arguments> combinations() {
+        return Stream.of(
+                Arguments.of("none", LinePipeline.compile(null, null, false,
+                        null, null, null)),
+                Arguments.of("s-odd", LinePipeline.compile(LineToSkip.odd,
+                        null, false, null, null, null)),
+                Arguments.of("w-leading", LinePipeline.compile(null,
+                        RemoveSpaces.leading, false, null, null, null)),
+                Arguments.of("w-all", LinePipeline.compile(null,
+                        RemoveSpaces.all, false, null, null, null)),
+                Arguments.of("x", LinePipeline.compile(null, null, true, null,
+                        null, null)),
+                Arguments.of("r-words", LinePipeline.compile(null, null, false,
+                        ReverseLine.words, null, null)),
+                Arguments.of("r-text", LinePipeline.compile(null, null, false,
+                        ReverseLine.text, null, null)),
+                Arguments.of("p", LinePipeline.compile(null, null, false, null,
+                        ">> ", null)),
+                Arguments.of("s-even-w-trailing-r-words-p", LinePipeline.compile(
+                        LineToSkip.even, RemoveSpaces.trailing, false,
+                        ReverseLine.words, ">> ", null)));
+    }
+
+    @BeforeAll
+    public static void setUp() throws IOException {
+        shortLines = tempDirectory.resolve("short.txt");
+        longLines = tempDirectory.resolve("long.txt");
+        lineCount = generate(shortLines, SHORT_LINE);
+        generate(longLines, LONG_LINE);
+
+        baselines = new Properties();
+        try (InputStream in = PerformanceTest.class.getResourceAsStream(
+                "performance-baselines.properties")) {
+            Assertions.assertNotNull(in, "performance-baselines.properties missing");
+            baselines.load(in);
+        }
+    }
+
+    @AfterAll
+    public static void record() throws IOException {
+        if (RECORD == null) {
+            return;
+        }
+
+        StringBuilder text = new StringBuilder(
+                "# Measured by PerformanceTest with -Dadjusttxt.perf.record\n");
+        recorded.forEach((key, value) ->
+                text.append(key).append('=').append(value).append('\n'));
+        Files.writeString(Paths.get(RECORD), text);
+    }
+
+    /* ---------------------------------- Tests --------------------------------- */
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("combinations")
+    public void allocation(String name, LinePipeline pipeline)
+            throws IOException {
+        Measurement measurement = measure(pipeline, shortLines);
+        double bytesPerLine = (double) measurement.allocatedBytes / lineCount;
+
+        if (RECORD != null) {
+            recorded.put(name + ".bytesPerLine",
+                    String.format("%.1f", bytesPerLine));
+            return;
+        }
+
+        double allocationBudget = baseline(name + ".bytesPerLine")
+                * (1 + TOLERANCE) + ALLOCATION_SLACK;
+        Assertions.assertTrue(bytesPerLine <= allocationBudget, String.format(
+                "%s allocates %.1f bytes per line, budget %.1f",
+                name, bytesPerLine, allocationBudget));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("combinations")
+    @EnabledIfSystemProperty(named = "adjusttxt.perfTests", matches = "true")
+    public void throughput(String name, LinePipeline pipeline)
+            throws IOException {
+        Measurement measurement = measure(pipeline, shortLines);
+        double mbPerSecond = Files.size(shortLines) / (1024.0 * 1024.0)
+                / (measurement.nanos / 1e9);
+
+        if (RECORD != null) {
+            recorded.put(name + ".mbPerSecond",
+                    String.format("%.0f", mbPerSecond));
+            return;
+        }
+
+        double throughputFloor = baseline(name + ".mbPerSecond")
+                * (1 - TOLERANCE);
+        Assertions.assertTrue(mbPerSecond >= throughputFloor, String.format(
+                "%s runs at %.0f MB/s, floor %.0f MB/s",
+                name, mbPerSecond, throughputFloor));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("combinations")
+    public void linearInLineLength(String name, LinePipeline pipeline)
+            throws IOException {
+        long shortNanos = measure(pipeline, shortLines).nanos;
+        long longNanos = measure(pipeline, longLines).nanos;
+
+        Assertions.assertTrue(longNanos <= shortNanos * LONG_LINE_RATIO,
+                String.format("%s takes %.0f ms on long lines and %.0f ms on"
+                                + " short lines of the same total size",
+                        name, longNanos / 1e6, shortNanos / 1e6));
+    }
+}